@@ -0,0 +1,191 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * BK-Tree - metric tree over a term dictionary for typo-tolerant lookup.
+ * Children are keyed by their Levenshtein distance to the parent, so a query
+ * within distance k only descends into children whose key lies in [d - k, d + k].
+ * Removed terms are tombstoned and the tree is rebuilt once they outnumber live terms.
+ */
+public class BKTree {
+
+    /** A dictionary term and its edit distance from the query */
+    public static final class Match {
+        private final String term;
+        private final int distance;
+
+        Match(String term, int distance) {
+            this.term = term;
+            this.distance = distance;
+        }
+
+        public String getTerm() { return term; }
+        public int getDistance() { return distance; }
+    }
+
+    private static final class Node {
+        final String term;
+        boolean deleted;
+        Node[] children; // indexed by distance to this node
+
+        Node(String term) {
+            this.term = term;
+        }
+    }
+
+    private Node root;
+    private int live;
+    private int tombstones;
+
+    // ==================== MAINTENANCE ====================
+
+    public synchronized void add(String term) {
+        if (term == null || term.isEmpty()) return;
+        if (root == null) {
+            root = new Node(term);
+            live++;
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int distance = distance(term, node.term);
+            if (distance == 0) {
+                if (node.deleted) {
+                    node.deleted = false;
+                    tombstones--;
+                    live++;
+                }
+                return;
+            }
+            if (node.children == null) {
+                node.children = new Node[distance + 1];
+            } else if (node.children.length <= distance) {
+                node.children = Arrays.copyOf(node.children, distance + 1);
+            }
+            Node child = node.children[distance];
+            if (child == null) {
+                node.children[distance] = new Node(term);
+                live++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    public synchronized void remove(String term) {
+        Node node = root;
+        while (node != null) {
+            int distance = distance(term, node.term);
+            if (distance == 0) {
+                if (!node.deleted) {
+                    node.deleted = true;
+                    live--;
+                    tombstones++;
+                    if (tombstones > live) compact();
+                }
+                return;
+            }
+            node = node.children == null || distance >= node.children.length ? null : node.children[distance];
+        }
+    }
+
+    public synchronized void clear() {
+        root = null;
+        live = 0;
+        tombstones = 0;
+    }
+
+    public synchronized int size() {
+        return live;
+    }
+
+    private void compact() {
+        List<String> terms = new ArrayList<>(live);
+        collect(root, terms);
+        clear();
+        for (String term : terms) {
+            add(term);
+        }
+    }
+
+    private static void collect(Node node, List<String> terms) {
+        Deque<Node> stack = new ArrayDeque<>();
+        if (node != null) stack.push(node);
+        while (!stack.isEmpty()) {
+            Node current = stack.pop();
+            if (!current.deleted) terms.add(current.term);
+            if (current.children == null) continue;
+            for (Node child : current.children) {
+                if (child != null) stack.push(child);
+            }
+        }
+    }
+
+    // ==================== QUERY ====================
+
+    /**
+     * All live terms within maxDistance edits of the query
+     */
+    public synchronized List<Match> search(String query, int maxDistance) {
+        List<Match> matches = new ArrayList<>();
+        if (root == null || query == null) return matches;
+
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            int maxChild = node.children == null ? 0 : node.children.length - 1;
+            // Distances past maxChild + maxDistance prune every child, so they need not be exact
+            int distance = distance(query, node.term, Math.max(maxDistance, maxChild + maxDistance));
+            if (distance <= maxDistance && !node.deleted) {
+                matches.add(new Match(node.term, distance));
+            }
+            if (node.children == null) continue;
+            // Triangle inequality: only this band of children can hold matches
+            int high = Math.min(distance + maxDistance, maxChild);
+            for (int d = Math.max(1, distance - maxDistance); d <= high; d++) {
+                Node child = node.children[d];
+                if (child != null) stack.push(child);
+            }
+        }
+        return matches;
+    }
+
+    static int distance(String a, String b) {
+        return distance(a, b, Integer.MAX_VALUE - 1);
+    }
+
+    /**
+     * Levenshtein distance using two rolling rows, giving up with cap + 1
+     * once every cell of a row exceeds cap
+     */
+    static int distance(String a, String b, int cap) {
+        if (a.equals(b)) return 0;
+        if (Math.abs(a.length() - b.length()) > cap) return cap + 1;
+        if (a.isEmpty()) return b.length();
+        if (b.isEmpty()) return a.length();
+
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) previous[j] = j;
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > cap) return cap + 1;
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], cap + 1);
+    }
+}
@@ -0,0 +1,165 @@
+import org.bson.Document;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Catalog Cache - read-through cache for the books collection.
+ * A snapshot is valid while its catalog version matches the current one;
+ * every catalog write bumps the version, so the next read reloads.
+ * Concurrent misses share a single load, and a failed load is never cached:
+ * the previous snapshot stays and the readers get an UnavailableException.
+ */
+public class CatalogCache {
+
+    /** The catalog could not be loaded (database down or query failed) */
+    public static class UnavailableException extends RuntimeException {
+        public UnavailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private static final class Snapshot {
+        final long version;
+        final long loadedAtNanos;
+        final List<Document> books;
+        final Map<String, Document> byTitle;
+
+        Snapshot(long version, long loadedAtNanos, List<Document> books) {
+            this.version = version;
+            this.loadedAtNanos = loadedAtNanos;
+            this.books = books;
+            Map<String, Document> index = new HashMap<>();
+            for (Document book : books) {
+                index.put(book.getString("title"), book);
+            }
+            this.byTitle = Collections.unmodifiableMap(index);
+        }
+    }
+
+    private final LongSupplier currentVersion;
+    private final Supplier<List<Document>> loader;
+    private final long maxAgeNanos;
+    private volatile Consumer<List<Document>> reloadListener;
+
+    private volatile Snapshot snapshot;
+    // The load in progress, shared by every reader that misses meanwhile
+    private final AtomicReference<CompletableFuture<Snapshot>> loading = new AtomicReference<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param currentVersion  source of the monotonic catalog version
+     * @param loader          reads the full catalog from the database; throws UnavailableException on failure
+     * @param maxAgeMillis    upper bound on snapshot age, covers writes made by other processes (0 = no limit)
+     */
+    public CatalogCache(LongSupplier currentVersion, Supplier<List<Document>> loader, long maxAgeMillis) {
+        this.currentVersion = currentVersion;
+        this.loader = loader;
+        this.maxAgeNanos = maxAgeMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(maxAgeMillis) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Get the catalog, loading it only when the cached snapshot is out of date.
+     * The returned list and its documents are shared and must not be modified.
+     * Throws UnavailableException when it has to be loaded and can't be.
+     */
+    public List<Document> get() {
+        return fresh().books;
+    }
+
+    /**
+     * Same snapshot as get(), keyed by title
+     */
+    public Map<String, Document> getByTitle() {
+        return fresh().byTitle;
+    }
+
+    /**
+     * Called with every successfully loaded catalog that became the current snapshot
+     * (e.g. to resync derived indexes); never with a failed or superseded load
+     */
+    public void setReloadListener(Consumer<List<Document>> listener) {
+        this.reloadListener = listener;
+    }
+
+    private Snapshot fresh() {
+        while (true) {
+            Snapshot current = snapshot;
+            long version = currentVersion.getAsLong();
+            if (current != null && current.version == version
+                    && System.nanoTime() - current.loadedAtNanos < maxAgeNanos) {
+                hits.increment();
+                return current;
+            }
+
+            CompletableFuture<Snapshot> mine = new CompletableFuture<>();
+            CompletableFuture<Snapshot> inFlight = loading.compareAndExchange(null, mine);
+            if (inFlight == null) {
+                try {
+                    Snapshot loaded = load(version);
+                    mine.complete(loaded);
+                    return loaded;
+                } catch (RuntimeException e) {
+                    mine.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    loading.set(null);
+                }
+            }
+
+            Snapshot shared;
+            try {
+                shared = inFlight.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+            // A load started before a write this reader must see doesn't count; go again
+            if (shared.version >= version) {
+                return shared;
+            }
+        }
+    }
+
+    private Snapshot load(long version) {
+        misses.increment();
+        // Tag with the version read before loading; a concurrent write makes the next read miss again
+        List<Document> books = Collections.unmodifiableList(loader.get());
+        Snapshot loaded = new Snapshot(version, System.nanoTime(), books);
+        // A load overtaken by a newer snapshot is handed to its readers but changes nothing else
+        if (snapshot != null && snapshot.version > version) {
+            return loaded;
+        }
+        snapshot = loaded;
+        Consumer<List<Document>> listener = reloadListener;
+        if (listener != null) {
+            listener.accept(books);
+        }
+        return loaded;
+    }
+
+    /**
+     * Drop the cached snapshot regardless of version
+     */
+    public void invalidate() {
+        snapshot = null;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+}
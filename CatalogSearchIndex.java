@@ -0,0 +1,204 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Catalog Search Index - in-memory inverted index over book title and author tokens.
+ * Catalog entries are "Title by Author" strings, as stored everywhere else.
+ * Used by both the CLI search menu and the /api/search endpoint.
+ */
+public class CatalogSearchIndex {
+    private static final double TITLE_WEIGHT = 2.0;
+    private static final double AUTHOR_WEIGHT = 1.0;
+    private static final double PREFIX_FACTOR = 0.5;
+    /** Upper bound on edits tolerated by fuzzySearch */
+    public static final int MAX_FUZZY_DISTANCE = 2;
+
+    // token -> (book -> field weight); sorted so prefix queries are a range scan
+    private final ConcurrentSkipListMap<String, Map<String, Double>> postings = new ConcurrentSkipListMap<>();
+    // book -> its tokens, for removal
+    private final Map<String, Set<String>> forward = new ConcurrentHashMap<>();
+    // distinct tokens, for typo-tolerant lookup
+    private final BKTree dictionary = new BKTree();
+
+    // ==================== MAINTENANCE ====================
+
+    /**
+     * Index (or re-index) one book
+     */
+    public synchronized void add(String book) {
+        if (book == null) return;
+        remove(book);
+
+        String[] parts = splitTitleAuthor(book);
+        Map<String, Double> weights = new HashMap<>();
+        for (String token : tokenize(parts[0])) {
+            weights.merge(token, TITLE_WEIGHT, Math::max);
+        }
+        for (String token : tokenize(parts[1])) {
+            weights.merge(token, AUTHOR_WEIGHT, Math::max);
+        }
+
+        for (Map.Entry<String, Double> entry : weights.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), t -> {
+                dictionary.add(t);
+                return new ConcurrentHashMap<>();
+            }).put(book, entry.getValue());
+        }
+        forward.put(book, weights.keySet());
+    }
+
+    /**
+     * Drop one book from the index
+     */
+    public synchronized void remove(String book) {
+        if (book == null) return;
+        Set<String> tokens = forward.remove(book);
+        if (tokens == null) return;
+        for (String token : tokens) {
+            Map<String, Double> books = postings.get(token);
+            if (books != null) {
+                books.remove(book);
+                if (books.isEmpty()) {
+                    postings.remove(token);
+                    dictionary.remove(token);
+                }
+            }
+        }
+    }
+
+    /**
+     * Bring the index in line with the given catalog, touching only what changed
+     */
+    public synchronized void syncTo(Collection<String> catalog) {
+        Set<String> wanted = new HashSet<>(catalog);
+        for (String book : new ArrayList<>(forward.keySet())) {
+            if (!wanted.contains(book)) remove(book);
+        }
+        for (String book : wanted) {
+            if (!forward.containsKey(book)) add(book);
+        }
+    }
+
+    public synchronized void clear() {
+        postings.clear();
+        forward.clear();
+        dictionary.clear();
+    }
+
+    public int size() {
+        return forward.size();
+    }
+
+    // ==================== QUERY ====================
+
+    /**
+     * Ranked multi-term search.
+     * Books matching more query terms rank first, then by IDF-weighted score
+     * (title hits count double, prefix hits half), then alphabetically.
+     */
+    public List<String> search(String query, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (terms.isEmpty() || limit <= 0) return new ArrayList<>();
+
+        int total = Math.max(1, forward.size());
+        Map<String, double[]> scores = new HashMap<>(); // book -> {matched terms, score}
+
+        for (String term : terms) {
+            Map<String, Double> best = new HashMap<>();
+            NavigableMap<String, Map<String, Double>> range = postings.subMap(term, true, term + Character.MAX_VALUE, false);
+            for (Map.Entry<String, Map<String, Double>> entry : range.entrySet()) {
+                Map<String, Double> books = entry.getValue();
+                double idf = Math.log(1.0 + (double) total / Math.max(1, books.size()));
+                double factor = entry.getKey().equals(term) ? 1.0 : PREFIX_FACTOR;
+                for (Map.Entry<String, Double> hit : books.entrySet()) {
+                    best.merge(hit.getKey(), hit.getValue() * idf * factor, Math::max);
+                }
+            }
+            for (Map.Entry<String, Double> hit : best.entrySet()) {
+                double[] score = scores.computeIfAbsent(hit.getKey(), b -> new double[2]);
+                score[0] += 1;
+                score[1] += hit.getValue();
+            }
+        }
+
+        return rank(scores, limit);
+    }
+
+    /**
+     * Typo-tolerant search: each query term also matches indexed tokens within a
+     * bounded edit distance (none for 1-2 letter terms, 1 up to 4 letters, else maxDistance).
+     * Closer matches score higher; ranking is otherwise the same as search().
+     */
+    public List<String> fuzzySearch(String query, int maxDistance, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (terms.isEmpty() || limit <= 0) return new ArrayList<>();
+        int bound = Math.max(0, Math.min(maxDistance, MAX_FUZZY_DISTANCE));
+
+        int total = Math.max(1, forward.size());
+        Map<String, double[]> scores = new HashMap<>();
+
+        for (String term : terms) {
+            int allowed = term.length() <= 2 ? 0 : term.length() <= 4 ? Math.min(1, bound) : bound;
+            Map<String, Double> best = new HashMap<>();
+            for (BKTree.Match match : dictionary.search(term, allowed)) {
+                Map<String, Double> books = postings.get(match.getTerm());
+                if (books == null) continue;
+                double idf = Math.log(1.0 + (double) total / Math.max(1, books.size()));
+                double factor = 1.0 / (1 + match.getDistance());
+                for (Map.Entry<String, Double> hit : books.entrySet()) {
+                    best.merge(hit.getKey(), hit.getValue() * idf * factor, Math::max);
+                }
+            }
+            for (Map.Entry<String, Double> hit : best.entrySet()) {
+                double[] score = scores.computeIfAbsent(hit.getKey(), b -> new double[2]);
+                score[0] += 1;
+                score[1] += hit.getValue();
+            }
+        }
+
+        return rank(scores, limit);
+    }
+
+    private static List<String> rank(Map<String, double[]> scores, int limit) {
+        List<Map.Entry<String, double[]>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort((a, b) -> {
+            int byTerms = Double.compare(b.getValue()[0], a.getValue()[0]);
+            if (byTerms != 0) return byTerms;
+            int byScore = Double.compare(b.getValue()[1], a.getValue()[1]);
+            return byScore != 0 ? byScore : a.getKey().compareTo(b.getKey());
+        });
+
+        List<String> results = new ArrayList<>();
+        for (int i = 0; i < ranked.size() && i < limit; i++) {
+            results.add(ranked.get(i).getKey());
+        }
+        return results;
+    }
+
+    // ==================== TOKENIZING ====================
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        return tokens;
+    }
+
+    private static String[] splitTitleAuthor(String book) {
+        int by = book.lastIndexOf(" by ");
+        if (by < 0) return new String[] { book, "" };
+        return new String[] { book.substring(0, by), book.substring(by + 4) };
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Category Index - bidirectional book/category mapping.
+ * Answers "which category is this book in" and "which books are in this category"
+ * in constant time; a book belongs to at most one category.
+ */
+public class CategoryIndex {
+
+    // category -> books in insertion order
+    private final Map<String, Set<String>> booksByCategory = new LinkedHashMap<>();
+    // book -> category
+    private final Map<String, String> categoryByBook = new HashMap<>();
+
+    /**
+     * Make sure a category exists, even if it has no books yet
+     */
+    public void addCategory(String category) {
+        booksByCategory.computeIfAbsent(category, c -> new LinkedHashSet<>());
+    }
+
+    /**
+     * Put a book into a category, moving it out of any previous one
+     */
+    public void assign(String book, String category) {
+        String previous = categoryByBook.put(book, category);
+        if (previous != null && !previous.equals(category)) {
+            booksByCategory.get(previous).remove(book);
+        }
+        booksByCategory.computeIfAbsent(category, c -> new LinkedHashSet<>()).add(book);
+    }
+
+    public void remove(String book) {
+        String category = categoryByBook.remove(book);
+        if (category != null) {
+            booksByCategory.get(category).remove(book);
+        }
+    }
+
+    /**
+     * Category of a book, or "" if it has none
+     */
+    public String categoryOf(String book) {
+        return categoryByBook.getOrDefault(book, "");
+    }
+
+    public List<String> booksIn(String category) {
+        Set<String> books = booksByCategory.get(category);
+        return books == null ? Collections.emptyList() : new ArrayList<>(books);
+    }
+
+    /**
+     * Replace the contents with a category -> books map (as stored in the database).
+     * A book listed under several categories keeps the last one.
+     */
+    public void load(Map<String, List<String>> categoryBooks) {
+        clear();
+        for (Map.Entry<String, List<String>> entry : categoryBooks.entrySet()) {
+            addCategory(entry.getKey());
+            for (String book : entry.getValue()) {
+                assign(book, entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Category -> books map in the shape the database expects
+     */
+    public Map<String, List<String>> toMap() {
+        Map<String, List<String>> map = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<String>> entry : booksByCategory.entrySet()) {
+            map.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        return map;
+    }
+
+    public void clear() {
+        booksByCategory.clear();
+        categoryByBook.clear();
+    }
+}
@@ -0,0 +1,191 @@
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Change Log - versioned record of which books and users were written, for incremental sync.
+ * Every write gets the next version number. Only the latest entry per book/user is kept
+ * (an older one is superseded by the newer write), and once the log holds more than
+ * maxEntries the oldest are truncated. A client asking for changes since a version that
+ * has been truncated away has to resync in full.
+ *
+ * Clients hold a cursor "epoch:version". The epoch is random per process, so a cursor
+ * handed out before a restart (or by another server) never matches and its holder is
+ * sent to resync, however far the version numbers have got.
+ *
+ * A book entry also remembers who could see the book before each write it stands for
+ * (public, or its owners while private), so a book that is now hidden is only reported
+ * as deleted to viewers that may have it.
+ */
+public class ChangeLog {
+    public static final String BOOK = "book";
+    public static final String USER = "user";
+    public static final String UPSERT = "upsert";
+    public static final String DELETE = "delete";
+
+    /** One logged write: the current state of the entity is looked up when the change is served */
+    public static final class Entry {
+        private final long version;
+        private final String entity;
+        private final String key;
+        private final String op;
+        // Before this write or any it superseded: visible to everyone / to these owners
+        private final boolean wasPublic;
+        private final Set<String> pastOwners;
+
+        Entry(long version, String entity, String key, String op, boolean wasPublic, Set<String> pastOwners) {
+            this.version = version;
+            this.entity = entity;
+            this.key = key;
+            this.op = op;
+            this.wasPublic = wasPublic;
+            this.pastOwners = pastOwners;
+        }
+
+        public long getVersion() { return version; }
+        public String getEntity() { return entity; }
+        public String getKey() { return key; }
+        public String getOp() { return op; }
+
+        /** Whether the viewer could see the entity at some point since the write it supersedes */
+        public boolean wasVisibleTo(String viewer) {
+            return wasPublic || (viewer != null && pastOwners.contains(viewer));
+        }
+    }
+
+    /** Result of a changesSince query */
+    public static final class Page {
+        private final List<Entry> entries;
+        private final String cursor;
+        private final boolean resync;
+        private final boolean hasMore;
+
+        Page(List<Entry> entries, String cursor, boolean resync, boolean hasMore) {
+            this.entries = entries;
+            this.cursor = cursor;
+            this.resync = resync;
+            this.hasMore = hasMore;
+        }
+
+        public List<Entry> getEntries() { return entries; }
+        /** Cursor to ask from next time */
+        public String getCursor() { return cursor; }
+        /** The requested cursor is no longer covered: reload everything, then continue from getCursor() */
+        public boolean isResync() { return resync; }
+        public boolean hasMore() { return hasMore; }
+    }
+
+    private final int maxEntries;
+    private final String epoch;
+    // version -> entry, oldest first
+    private final NavigableMap<Long, Entry> entries = new TreeMap<>();
+    // "entity:key" -> version of its latest entry
+    private final Map<String, Long> latest = new HashMap<>();
+    private long version;
+    // Changes at or below this version may have been dropped
+    private long floor;
+
+    public ChangeLog(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.epoch = Long.toHexString(new SecureRandom().nextLong() & Long.MAX_VALUE);
+    }
+
+    /**
+     * Log a write to one user (by username) and return its version
+     */
+    public long record(String entity, String key, String op) {
+        return record(entity, key, op, false, null);
+    }
+
+    /**
+     * Log a write to one book (by title) and return its version.
+     * wasPublic / owner describe who could see the book just before this write
+     * (not public and no owner when it didn't exist).
+     */
+    public synchronized long record(String entity, String key, String op, boolean wasPublic, String owner) {
+        long current = ++version;
+        Set<String> pastOwners = new HashSet<>();
+        if (owner != null) pastOwners.add(owner);
+
+        Long superseded = latest.put(entity + ":" + key, current);
+        if (superseded != null) {
+            Entry previous = entries.remove(superseded);
+            wasPublic |= previous.wasPublic;
+            pastOwners.addAll(previous.pastOwners);
+        }
+        entries.put(current, new Entry(current, entity, key, op, wasPublic, pastOwners));
+
+        while (entries.size() > maxEntries) {
+            Entry oldest = entries.pollFirstEntry().getValue();
+            latest.remove(oldest.entity + ":" + oldest.key);
+            floor = oldest.version;
+        }
+        return current;
+    }
+
+    /**
+     * Up to limit changes after the given cursor, oldest first (null = none yet, resync)
+     */
+    public synchronized Page changesSince(String cursor, int limit) {
+        long since = versionOf(cursor);
+        // Another epoch (e.g. from before a restart), truncated past it, or never issued
+        if (since < floor || since > version) {
+            return new Page(Collections.emptyList(), cursorOf(version), true, false);
+        }
+        limit = Math.max(1, limit);
+        List<Entry> page = new ArrayList<>();
+        long next = version;
+        for (Entry entry : entries.tailMap(since, false).values()) {
+            if (page.size() >= limit) {
+                next = page.get(page.size() - 1).version;
+                break;
+            }
+            page.add(entry);
+        }
+        return new Page(page, cursorOf(next), false, next < version);
+    }
+
+    /**
+     * Forget everything (after the collections were emptied); every client must resync
+     */
+    public synchronized void truncateAll() {
+        entries.clear();
+        latest.clear();
+        floor = ++version;
+    }
+
+    public synchronized String getCursor() {
+        return cursorOf(version);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private String cursorOf(long version) {
+        return epoch + ":" + version;
+    }
+
+    /**
+     * Version within this epoch; -1 for a cursor from another epoch or none at all.
+     * Throws IllegalArgumentException for a malformed cursor.
+     */
+    private long versionOf(String cursor) {
+        if (cursor == null) return -1;
+        int colon = cursor.indexOf(':');
+        if (colon < 0) throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        try {
+            long since = Long.parseLong(cursor.substring(colon + 1));
+            return epoch.equals(cursor.substring(0, colon)) ? since : -1;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
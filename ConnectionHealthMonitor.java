@@ -0,0 +1,137 @@
+import com.mongodb.event.ServerHeartbeatFailedEvent;
+import com.mongodb.event.ServerHeartbeatSucceededEvent;
+import com.mongodb.event.ServerMonitorListener;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Connection Health Monitor
+ * Tracks MongoDB liveness from driver heartbeat events so callers can check
+ * the connection without paying a server round trip on every operation.
+ */
+public class ConnectionHealthMonitor implements ServerMonitorListener {
+
+    public enum State {
+        UNKNOWN,   // No heartbeat seen yet
+        HEALTHY,   // Last heartbeat succeeded within the staleness window
+        DEGRADED,  // Recent heartbeat failures or stale state, operations still attempted
+        DOWN       // Failure threshold reached, operations short-circuit
+    }
+
+    private final long stalenessNanos;
+    private final int failureThreshold;
+    private final boolean allowDegraded;
+    private final BooleanSupplier probe;
+
+    private volatile State state = State.UNKNOWN;
+    private final AtomicLong lastHeartbeatNanos = new AtomicLong(0);
+    private final AtomicLong lastProbeNanos = new AtomicLong(0);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger(0);
+    private volatile long lastRoundTripMillis = -1;
+
+    /**
+     * @param stalenessMillis  how long a heartbeat result is trusted before re-probing
+     * @param failureThreshold consecutive failures before the connection is reported DOWN
+     * @param allowDegraded    whether operations are still attempted while DEGRADED
+     * @param probe            fallback round trip used when cached state is stale
+     */
+    public ConnectionHealthMonitor(long stalenessMillis, int failureThreshold, boolean allowDegraded,
+                                   BooleanSupplier probe) {
+        this.stalenessNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, stalenessMillis));
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.allowDegraded = allowDegraded;
+        this.probe = probe;
+    }
+
+    // ==================== DRIVER EVENTS ====================
+
+    @Override
+    public void serverHeartbeatSucceeded(ServerHeartbeatSucceededEvent event) {
+        lastRoundTripMillis = event.getElapsedTime(TimeUnit.MILLISECONDS);
+        recordSuccess();
+    }
+
+    @Override
+    public void serverHeartbeatFailed(ServerHeartbeatFailedEvent event) {
+        String reason = event.getThrowable() != null ? event.getThrowable().getMessage() : "unknown";
+        recordFailure(reason);
+    }
+
+    // ==================== STATE ====================
+
+    /**
+     * Cheap liveness check. Only falls back to a real probe when the cached
+     * state is older than the staleness window, and then at most once per window.
+     */
+    public boolean isUsable() {
+        long now = System.nanoTime();
+        long last = lastHeartbeatNanos.get();
+        if (state == State.UNKNOWN || now - last > stalenessNanos) {
+            long lastProbe = lastProbeNanos.get();
+            if ((lastProbe == 0 || now - lastProbe > stalenessNanos)
+                    && lastProbeNanos.compareAndSet(lastProbe, now)) {
+                runProbe();
+            }
+        }
+        State current = state;
+        return current == State.HEALTHY || (current == State.DEGRADED && allowDegraded);
+    }
+
+    private void runProbe() {
+        boolean ok;
+        try {
+            ok = probe.getAsBoolean();
+        } catch (Exception e) {
+            ok = false;
+        }
+        if (ok) {
+            recordSuccess();
+        } else {
+            recordFailure("probe failed");
+        }
+    }
+
+    void recordSuccess() {
+        lastHeartbeatNanos.set(System.nanoTime());
+        consecutiveFailures.set(0);
+        transition(State.HEALTHY, null);
+    }
+
+    void recordFailure(String reason) {
+        lastHeartbeatNanos.set(System.nanoTime());
+        int failures = consecutiveFailures.incrementAndGet();
+        transition(failures >= failureThreshold ? State.DOWN : State.DEGRADED, reason);
+    }
+
+    private void transition(State next, String reason) {
+        State previous = state;
+        if (previous == next) return;
+        state = next;
+        switch (next) {
+            case HEALTHY -> {
+                if (previous != State.UNKNOWN) {
+                    System.out.println("✅ MongoDB connection healthy again");
+                }
+            }
+            case DEGRADED -> System.err.println("⚠️  MongoDB connection degraded: " + reason);
+            case DOWN -> System.err.println("❌ MongoDB connection down after "
+                    + consecutiveFailures.get() + " failed checks: " + reason);
+            default -> { }
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getLastRoundTripMillis() {
+        return lastRoundTripMillis;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+}
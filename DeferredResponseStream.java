@@ -0,0 +1,146 @@
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Response body stream that decides the framing by itself.
+ * Output is buffered up to a threshold: if the body ends within it, the response
+ * goes out with a Content-Length; once it grows past it, headers are sent and
+ * the rest is streamed with chunked transfer encoding.
+ * With a content coding (gzip or deflate) the body is compressed in either mode,
+ * unless it ends up smaller than the minimum worth compressing.
+ */
+public class DeferredResponseStream extends OutputStream {
+    private final HttpExchange exchange;
+    private final int status;
+    private final byte[] buffer;
+    private final String encoding;
+    private final int level;
+    private final int minCompressBytes;
+    private int count;
+    private OutputStream body;
+    private Deflater deflater;
+    private boolean closed;
+
+    public DeferredResponseStream(HttpExchange exchange, int status, int bufferSize) {
+        this(exchange, status, bufferSize, null, Deflater.DEFAULT_COMPRESSION, 0);
+    }
+
+    /**
+     * @param encoding          "gzip", "deflate" or null for identity
+     * @param level             Deflater compression level (0-9, or -1 for the default)
+     * @param minCompressBytes  bodies smaller than this are sent uncompressed
+     */
+    public DeferredResponseStream(HttpExchange exchange, int status, int bufferSize,
+                                  String encoding, int level, int minCompressBytes) {
+        this.exchange = exchange;
+        this.status = status;
+        this.encoding = encoding;
+        this.level = Math.max(Deflater.DEFAULT_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION, level));
+        this.minCompressBytes = minCompressBytes;
+        // The decision to compress must be made before streaming starts
+        this.buffer = new byte[Math.max(1, Math.max(bufferSize, minCompressBytes))];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (closed) throw new IOException("Response already closed");
+        if (body == null) {
+            if (count + length <= buffer.length) {
+                System.arraycopy(bytes, offset, buffer, count, length);
+                count += length;
+                return;
+            }
+            startStreaming();
+        }
+        body.write(bytes, offset, length);
+    }
+
+    /**
+     * Whether the headers have been committed with chunked framing
+     */
+    public boolean isStreaming() {
+        return body != null;
+    }
+
+    private void startStreaming() throws IOException {
+        if (encoding != null) exchange.getResponseHeaders().set("Content-Encoding", encoding);
+        exchange.sendResponseHeaders(status, 0); // 0 = chunked
+        body = encoding != null ? compressing(exchange.getResponseBody()) : exchange.getResponseBody();
+        body.write(buffer, 0, count);
+        count = 0;
+    }
+
+    private OutputStream compressing(OutputStream out) throws IOException {
+        if ("gzip".equals(encoding)) {
+            return new GZIPOutputStream(out, 8192) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+        // HTTP "deflate" is the zlib format, which is what Deflater produces by default
+        deflater = new Deflater(level);
+        return new DeflaterOutputStream(out, deflater, 8192);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // Still buffering: nothing to push yet, and flushing must not force chunked mode
+        if (body != null) body.flush();
+    }
+
+    /**
+     * Drop everything buffered without sending it, so the caller can send another response.
+     * Only possible while still buffering; once streaming, the headers are already out.
+     */
+    public void discard() {
+        if (body != null) throw new IllegalStateException("Response already streaming");
+        closed = true;
+        count = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        if (body != null) {
+            try {
+                body.close();
+            } finally {
+                if (deflater != null) deflater.end();
+            }
+            return;
+        }
+        // Whole body fit in the buffer: send it with an exact length
+        byte[] bytes = buffer;
+        int length = count;
+        if (encoding != null && count >= minCompressBytes) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(count / 2 + 64);
+            try (OutputStream out = compressing(compressed)) {
+                out.write(buffer, 0, count);
+            } finally {
+                if (deflater != null) deflater.end();
+            }
+            if (compressed.size() < count) {
+                exchange.getResponseHeaders().set("Content-Encoding", encoding);
+                bytes = compressed.toByteArray();
+                length = bytes.length;
+            }
+        }
+        exchange.sendResponseHeaders(status, length == 0 ? -1 : length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes, 0, length);
+        }
+    }
+}
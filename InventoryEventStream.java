@@ -0,0 +1,282 @@
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import org.bson.Document;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+
+/**
+ * Inventory Event Stream - pushes copy-count changes to browsers over Server-Sent Events.
+ * Subscribed to the BOOK_BORROWED / BOOK_RETURNED events; each change becomes a small
+ * "inventory" message with the title and its new number of copies, sent only to viewers
+ * allowed to see that book.
+ * Every client has its own bounded queue, drained by a small shared pool of writer threads,
+ * so a slow client never holds up the others: when its queue overflows, the backlog is
+ * dropped and the client is told to resync (reload its view) instead. A client that stops
+ * reading altogether would block a writer, so a watchdog thread closes any stream whose
+ * write has been stuck for too long. The watchdog also sends idle connections a comment
+ * as keep-alive.
+ */
+public class InventoryEventStream implements LibraryObserver {
+    private static final Gson gson = new Gson();
+    private static final String RESYNC = "event: resync\ndata: {}\n\n";
+    private static final String HEARTBEAT = ": keep-alive\n\n";
+
+    private final int maxClients;
+    private final int bufferSize;
+    private final long heartbeatMillis;
+    private final long retryMillis;
+    private final long stallMillis;
+    private final BiPredicate<Document, String> visibleTo;
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+    // Reserved before a client is added, so concurrent opens can't overshoot maxClients
+    private final AtomicInteger clientCount = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ExecutorService writers;
+    // Heartbeats and stuck-write detection; never writes itself, so a stalled client can't block it
+    private final ScheduledExecutorService watchdog;
+
+    /**
+     * @param maxClients       open streams allowed at once
+     * @param bufferSize       messages queued per client before it is asked to resync
+     * @param heartbeatMillis  keep-alive interval on an idle stream
+     * @param retryMillis      reconnect delay suggested to the browser
+     * @param stallMillis      a write blocked this long closes the stream
+     * @param writerThreads    threads shared by all streams for writing
+     * @param visibleTo        whether a book document may be shown to a viewer (null = anonymous)
+     */
+    public InventoryEventStream(int maxClients, int bufferSize, long heartbeatMillis, long retryMillis,
+                                long stallMillis, int writerThreads, BiPredicate<Document, String> visibleTo) {
+        this.maxClients = Math.max(1, maxClients);
+        this.bufferSize = Math.max(1, bufferSize);
+        this.heartbeatMillis = Math.max(1000, heartbeatMillis);
+        this.retryMillis = Math.max(0, retryMillis);
+        this.stallMillis = Math.max(1000, stallMillis);
+        this.visibleTo = visibleTo;
+        AtomicInteger counter = new AtomicInteger();
+        this.writers = Executors.newFixedThreadPool(Math.max(1, writerThreads), r -> {
+            Thread t = new Thread(r, "sse-writer-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sse-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        long tick = Math.min(this.heartbeatMillis, this.stallMillis) / 2;
+        watchdog.scheduleWithFixedDelay(this::checkClients, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Set<LibraryEventType> topics() {
+        return EnumSet.of(LibraryEventType.BOOK_BORROWED, LibraryEventType.BOOK_RETURNED);
+    }
+
+    @Override
+    public void update(String eventType, String message) {
+        // Only events that carry the book and its copy count are streamed
+    }
+
+    @Override
+    public void update(String eventType, String message, Map<String, Object> data) {
+        if (data == null || !(data.get("book") instanceof Document) || clients.isEmpty()) return;
+        Document book = (Document) data.get("book");
+
+        Map<String, Object> delta = new LinkedHashMap<>();
+        delta.put("type", LibraryEventType.BOOK_BORROWED.name().equals(eventType) ? "borrowed" : "returned");
+        delta.put("title", data.get("title"));
+        delta.put("copies", data.get("copies"));
+        String frame = "id: " + sequence.incrementAndGet() + "\nevent: inventory\ndata: " + gson.toJson(delta) + "\n\n";
+
+        for (Client client : clients) {
+            if (visibleTo.test(book, client.viewer)) {
+                client.offer(frame);
+            }
+        }
+    }
+
+    /**
+     * Take over the exchange as an event stream for the given viewer (null = anonymous).
+     * Returns false (leaving the exchange untouched) when the client limit is reached.
+     */
+    public boolean open(HttpExchange exchange, String viewer) throws IOException {
+        if (clientCount.incrementAndGet() > maxClients) {
+            clientCount.decrementAndGet();
+            return false;
+        }
+
+        Client client;
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0); // 0 = chunked, stays open
+            OutputStream out = exchange.getResponseBody();
+            out.write(("retry: " + retryMillis + "\n\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            client = new Client(exchange, out, viewer);
+        } catch (IOException e) {
+            clientCount.decrementAndGet();
+            throw e;
+        }
+
+        // Registered first, so a failed write below finds it and releases the slot
+        clients.add(client);
+
+        // Reconnecting after missed messages: the browser's view is stale
+        String lastEventId = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+        if (lastEventId != null && !lastEventId.equals(String.valueOf(sequence.get()))) {
+            client.overflowed = true;
+            client.schedule();
+        }
+        return true;
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * Close every open stream (server shutdown)
+     */
+    public void close() {
+        watchdog.shutdownNow();
+        writers.shutdownNow();
+        for (Client client : clients) {
+            client.close();
+        }
+    }
+
+    private void checkClients() {
+        long now = System.currentTimeMillis();
+        for (Client client : clients) {
+            if (client.abortIfStalled(now)) {
+                System.err.println("⚠️  Closed an event stream whose client stopped reading");
+            } else if (now - client.lastWrite >= heartbeatMillis) {
+                client.offer(HEARTBEAT);
+            }
+        }
+    }
+
+    private final class Client {
+        private final HttpExchange exchange;
+        private final OutputStream out;
+        private final String viewer;
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(bufferSize);
+        // At most one writer drains a client at a time
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean overflowed;
+        private volatile boolean closed;
+        private volatile long lastWrite = System.currentTimeMillis();
+        // Set while a write is in progress (guarded by this)
+        private Thread writer;
+        private long writeStarted;
+
+        Client(HttpExchange exchange, OutputStream out, String viewer) {
+            this.exchange = exchange;
+            this.out = out;
+            this.viewer = viewer;
+        }
+
+        void offer(String frame) {
+            if (!queue.offer(frame)) overflowed = true;
+            schedule();
+        }
+
+        void schedule() {
+            if (!closed && draining.compareAndSet(false, true)) {
+                try {
+                    writers.execute(this::drain);
+                } catch (RuntimeException e) {
+                    // Writers shut down
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                while (!closed) {
+                    String frame;
+                    if (overflowed) {
+                        // Copies are absolute values, so skipping straight to a resync loses nothing
+                        overflowed = false;
+                        queue.clear();
+                        frame = RESYNC;
+                    } else {
+                        frame = queue.poll();
+                        if (frame == null) break;
+                    }
+                    write(frame.getBytes(StandardCharsets.UTF_8));
+                }
+                write(null);
+                lastWrite = System.currentTimeMillis();
+            } catch (IOException e) {
+                // Client went away, or the watchdog interrupted a stuck write (which closes the socket)
+                close();
+            } finally {
+                // An interrupt meant for this client must not reach the next task on this thread
+                Thread.interrupted();
+                draining.set(false);
+            }
+            // A frame offered after the last poll but before draining was released
+            if (!queue.isEmpty() || overflowed) schedule();
+        }
+
+        // One frame, or a flush when bytes is null; marked so the watchdog can see it is stuck
+        private void write(byte[] bytes) throws IOException {
+            synchronized (this) {
+                writer = Thread.currentThread();
+                writeStarted = System.currentTimeMillis();
+            }
+            try {
+                if (bytes != null) {
+                    out.write(bytes);
+                } else {
+                    out.flush();
+                }
+            } finally {
+                synchronized (this) {
+                    writer = null;
+                    writeStarted = 0;
+                }
+            }
+        }
+
+        /**
+         * Interrupt a write blocked for longer than stallMillis. The socket is an interruptible
+         * channel, so this closes it and the write fails; the drain then closes the client.
+         */
+        synchronized boolean abortIfStalled(long now) {
+            if (writer == null || now - writeStarted < stallMillis) return false;
+            closed = true;
+            writer.interrupt();
+            writer = null;
+            return true;
+        }
+
+        void close() {
+            closed = true;
+            if (clients.remove(this)) {
+                clientCount.decrementAndGet();
+                exchange.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,390 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Library Event Bus - asynchronous delivery for LibraryEventManager.
+ * Publishers only place the event in a lock-free ring buffer; dispatcher
+ * threads deliver it to observers, so slow observers never block a checkout.
+ * Subscriptions are indexed by event type, so an event only visits
+ * observers interested in it.
+ */
+public class LibraryEventBus {
+
+    /** What publish() does when the ring buffer is full */
+    public enum OverflowPolicy {
+        DROP_NEWEST,  // discard the event being published
+        DROP_OLDEST,  // discard the oldest queued event to make room
+        CALLER_RUNS,  // deliver synchronously on the publishing thread
+        BLOCK         // wait for space
+    }
+
+    static final class Event {
+        final LibraryEventType type;
+        final String name;
+        final String message;
+        final Map<String, Object> data;
+
+        Event(LibraryEventType type, String name, String message, Map<String, Object> data) {
+            this.type = type;
+            this.name = name;
+            this.message = message;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Handle for one observer's subscription. Registering an equal observer again
+     * is a no-op, and closing any handle for it removes it from its topics.
+     */
+    public final class Subscription implements AutoCloseable {
+        private final LibraryObserver strongRef;
+        private final WeakReference<LibraryObserver> weakRef;
+        private final Set<LibraryEventType> topics;
+        private final int hash;
+
+        private Subscription(LibraryObserver observer, Set<LibraryEventType> topics, boolean weak) {
+            this.strongRef = weak ? null : observer;
+            this.weakRef = weak ? new WeakReference<>(observer) : null;
+            this.topics = topics;
+            this.hash = observer.hashCode();
+        }
+
+        LibraryObserver observer() {
+            return strongRef != null ? strongRef : weakRef.get();
+        }
+
+        @Override
+        public void close() {
+            for (LibraryEventType topic : topics) {
+                subscribers.get(topic).remove(this);
+            }
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) return true;
+            if (!(other instanceof Subscription)) return false;
+            LibraryObserver mine = observer();
+            return mine != null && mine.equals(((Subscription) other).observer());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final RingBuffer<Event> buffer;
+    private final OverflowPolicy overflowPolicy;
+    private final Map<LibraryEventType, Set<Subscription>> subscribers = new EnumMap<>(LibraryEventType.class);
+    private final Thread[] dispatchers;
+    private static final int IDLE_SPINS = 100;
+    private volatile boolean running = true;
+    // Dispatchers parked with nothing to do; publishers only unpark when this is non-zero
+    private final AtomicInteger sleeping = new AtomicInteger();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * @param bufferSize        ring buffer capacity (rounded up to a power of two)
+     * @param dispatcherThreads number of delivery threads; 0 delivers synchronously
+     * @param overflowPolicy    behaviour when the buffer is full
+     */
+    public LibraryEventBus(int bufferSize, int dispatcherThreads, OverflowPolicy overflowPolicy) {
+        this.buffer = new RingBuffer<>(bufferSize);
+        this.overflowPolicy = overflowPolicy;
+        for (LibraryEventType type : LibraryEventType.values()) {
+            subscribers.put(type, new CopyOnWriteArraySet<>());
+        }
+        this.dispatchers = new Thread[Math.max(0, dispatcherThreads)];
+        for (int i = 0; i < dispatchers.length; i++) {
+            dispatchers[i] = new Thread(this::runDispatcher, "library-event-dispatcher-" + (i + 1));
+            dispatchers[i].setDaemon(true);
+            dispatchers[i].start();
+        }
+    }
+
+    /**
+     * Build a bus from the events.* settings in config.properties
+     */
+    public static LibraryEventBus fromConfig() {
+        Properties props = new Properties();
+        try (FileInputStream fis = new FileInputStream("config.properties")) {
+            props.load(fis);
+        } catch (IOException e) {
+            // Defaults below
+        }
+        int bufferSize = intProperty(props, "events.buffer.size", 1024);
+        int threads = intProperty(props, "events.dispatcher.threads", 1);
+        OverflowPolicy policy;
+        try {
+            policy = OverflowPolicy.valueOf(props.getProperty("events.overflow.policy", "DROP_OLDEST").trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            policy = OverflowPolicy.DROP_OLDEST;
+        }
+        return new LibraryEventBus(bufferSize, threads, policy);
+    }
+
+    private static int intProperty(Properties props, String key, int defaultValue) {
+        try {
+            return Integer.parseInt(props.getProperty(key, String.valueOf(defaultValue)).trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    // ==================== SUBSCRIPTIONS ====================
+
+    /**
+     * Subscribe to the topics the observer declares (idempotent for equal observers)
+     */
+    public Subscription subscribe(LibraryObserver observer) {
+        return subscribe(observer, false, observer.topics());
+    }
+
+    public Subscription subscribe(LibraryObserver observer, Set<LibraryEventType> topics) {
+        return subscribe(observer, false, topics);
+    }
+
+    /**
+     * Subscribe without keeping the observer alive; it is dropped once garbage collected
+     */
+    public Subscription subscribeWeak(LibraryObserver observer, Set<LibraryEventType> topics) {
+        return subscribe(observer, true, topics);
+    }
+
+    private Subscription subscribe(LibraryObserver observer, boolean weak, Set<LibraryEventType> topics) {
+        Set<LibraryEventType> copy = topics.isEmpty() ? EnumSet.noneOf(LibraryEventType.class) : EnumSet.copyOf(topics);
+        Subscription subscription = new Subscription(observer, copy, weak);
+        for (LibraryEventType topic : copy) {
+            subscribers.get(topic).add(subscription);
+        }
+        return subscription;
+    }
+
+    public void unsubscribe(LibraryObserver observer) {
+        new Subscription(observer, EnumSet.allOf(LibraryEventType.class), false).close();
+    }
+
+    // ==================== PUBLISH ====================
+
+    /**
+     * Publish an event. Never blocks unless the overflow policy is BLOCK.
+     */
+    public void publish(String eventName, String message) {
+        publish(LibraryEventType.fromName(eventName), eventName, message, null);
+    }
+
+    public void publish(LibraryEventType type, String message) {
+        publish(type, type.name(), message, null);
+    }
+
+    /**
+     * Publish with structured details (e.g. title and remaining copies) for observers that use them
+     */
+    public void publish(LibraryEventType type, String message, Map<String, Object> data) {
+        publish(type, type.name(), message, data);
+    }
+
+    private void publish(LibraryEventType type, String eventName, String message, Map<String, Object> data) {
+        published.increment();
+        // Nobody listening: skip the buffer entirely
+        if (subscribers.get(type).isEmpty()) return;
+        Event event = new Event(type, eventName, message, data);
+
+        if (dispatchers.length == 0 || !running) {
+            deliver(event);
+            return;
+        }
+        if (buffer.offer(event)) {
+            wakeDispatchers();
+            return;
+        }
+
+        switch (overflowPolicy) {
+            case DROP_NEWEST -> dropped.increment();
+            case DROP_OLDEST -> {
+                while (!buffer.offer(event)) {
+                    if (buffer.poll() != null) dropped.increment();
+                }
+                wakeDispatchers();
+            }
+            case CALLER_RUNS -> deliver(event);
+            case BLOCK -> {
+                while (!buffer.offer(event)) {
+                    if (!running) {
+                        deliver(event);
+                        return;
+                    }
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+                }
+                wakeDispatchers();
+            }
+        }
+    }
+
+    // ==================== DISPATCH ====================
+
+    private void runDispatcher() {
+        int idleSpins = 0;
+        while (running || !buffer.isEmpty()) {
+            Event event = buffer.poll();
+            if (event != null) {
+                idleSpins = 0;
+                deliver(event);
+                continue;
+            }
+            // Spin briefly to catch bursts, then sleep until a publisher wakes us
+            if (idleSpins++ < IDLE_SPINS) {
+                Thread.onSpinWait();
+                continue;
+            }
+            sleeping.incrementAndGet();
+            try {
+                // Re-check after announcing: a publish that saw no sleepers is caught here
+                if (running && buffer.isEmpty()) {
+                    LockSupport.park(this);
+                }
+            } finally {
+                sleeping.decrementAndGet();
+            }
+            idleSpins = 0;
+        }
+    }
+
+    private void wakeDispatchers() {
+        if (sleeping.get() == 0) return;
+        for (Thread dispatcher : dispatchers) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    private void deliver(Event event) {
+        Set<Subscription> topicSubscribers = subscribers.get(event.type);
+        for (Subscription subscription : topicSubscribers) {
+            LibraryObserver observer = subscription.observer();
+            if (observer == null) {
+                // Weak subscription whose observer was collected
+                topicSubscribers.remove(subscription);
+                continue;
+            }
+            try {
+                observer.update(event.name, event.message, event.data);
+            } catch (Exception e) {
+                // One failing observer must not stop delivery to the rest
+                failures.increment();
+                System.err.println("❌ Observer " + observer.getClass().getSimpleName()
+                        + " failed on " + event.name + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stop the dispatchers after they deliver what is already queued
+     */
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        for (Thread dispatcher : dispatchers) {
+            LockSupport.unpark(dispatcher);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (Thread dispatcher : dispatchers) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) break;
+            try {
+                dispatcher.join(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public long getPublishedCount() { return published.sum(); }
+    public long getDroppedCount() { return dropped.sum(); }
+    public long getFailureCount() { return failures.sum(); }
+    public int getSubscriberCount(LibraryEventType type) { return subscribers.get(type).size(); }
+
+    /**
+     * Bounded lock-free multi-producer/multi-consumer ring buffer.
+     * Each slot carries a sequence number telling producers and consumers whose turn it is.
+     */
+    static final class RingBuffer<E> {
+        private final int mask;
+        private final AtomicReferenceArray<E> slots;
+        private final AtomicLongArray sequences;
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+
+        RingBuffer(int requestedCapacity) {
+            int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity) - 1) << 1;
+            this.mask = capacity - 1;
+            this.slots = new AtomicReferenceArray<>(capacity);
+            this.sequences = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                sequences.set(i, i);
+            }
+        }
+
+        boolean offer(E element) {
+            long pos = tail.get();
+            while (true) {
+                int index = (int) (pos & mask);
+                long diff = sequences.get(index) - pos;
+                if (diff == 0) {
+                    if (tail.compareAndSet(pos, pos + 1)) {
+                        slots.set(index, element);
+                        sequences.set(index, pos + 1);
+                        return true;
+                    }
+                    pos = tail.get();
+                } else if (diff < 0) {
+                    return false; // full
+                } else {
+                    pos = tail.get();
+                }
+            }
+        }
+
+        E poll() {
+            long pos = head.get();
+            while (true) {
+                int index = (int) (pos & mask);
+                long diff = sequences.get(index) - (pos + 1);
+                if (diff == 0) {
+                    if (head.compareAndSet(pos, pos + 1)) {
+                        E element = slots.get(index);
+                        slots.set(index, null);
+                        sequences.set(index, pos + mask + 1);
+                        return element;
+                    }
+                    pos = head.get();
+                } else if (diff < 0) {
+                    return null; // empty
+                } else {
+                    pos = head.get();
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return head.get() >= tail.get();
+        }
+    }
+}
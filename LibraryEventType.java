@@ -0,0 +1,43 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Typed event kinds used to index observer subscriptions.
+ * Free-form event names (e.g. admin notifications) map to FINE_ALERT or CUSTOM.
+ */
+public enum LibraryEventType {
+    SYSTEM_SHUTDOWN,
+    ADMIN_LOGIN,
+    ADMIN_LOGOUT,
+    USER_LOGIN,
+    USER_LOGOUT,
+    USER_REGISTERED,
+    USER_REMOVED,
+    NEW_BOOK_ADDED,
+    BOOK_REMOVED,
+    BOOK_BORROWED,
+    BOOK_RETURNED,
+    LATE_RETURN,
+    BOOK_FAVORITED,
+    FINE_ALERT,
+    CUSTOM;
+
+    private static final Map<String, LibraryEventType> BY_NAME = new HashMap<>();
+
+    static {
+        for (LibraryEventType type : values()) {
+            BY_NAME.put(type.name(), type);
+        }
+    }
+
+    /**
+     * Resolve an event name to its kind
+     */
+    public static LibraryEventType fromName(String eventName) {
+        if (eventName == null) return CUSTOM;
+        LibraryEventType type = BY_NAME.get(eventName);
+        if (type != null) return type;
+        if (eventName.contains("FINE") || eventName.contains("OVERDUE")) return FINE_ALERT;
+        return CUSTOM;
+    }
+}
@@ -1,47 +1,163 @@
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.Headers;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.mongodb.client.model.Projections;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 public class LibraryHttpServer {
     private static final int PORT = 8080;
-    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private static final Gson gson = new Gson();
+    private static final Gson prettyGson = new GsonBuilder().setPrettyPrinting().create();
     private static final MongoDBManager dbManager = MongoDBManager.getInstance();
+    private static final Properties serverConfig = loadServerConfig();
+    private static final int JSON_STREAM_BUFFER = intConfig("server.json.buffer.bytes", 8192);
+    private static final boolean COMPRESSION_ENABLED =
+            Boolean.parseBoolean(serverConfig.getProperty("server.compression.enabled", "true").trim());
+    // Deflater accepts 0-9, or -1 for its default
+    private static final int COMPRESSION_LEVEL = Math.max(-1, Math.min(9, intConfig("server.compression.level", 6)));
+    private static final int COMPRESSION_MIN_BYTES = intConfig("server.compression.minBytes", 1024);
+    // Connections closed unanswered because even the shed queue was full
+    private static final AtomicLong SHED_DROPPED = new AtomicLong();
+    private static final SessionStore sessions = new SessionStore(
+            intConfig("server.session.ttl.minutes", 30) * 60_000L,
+            intConfig("server.session.maxSessions", 10000),
+            intConfig("server.session.snapshot.maxAge.ms", 60000),
+            dbManager::loadUser);
 
     public static void main(String[] args) throws IOException {
         // Initialize DB Data
         loadData();
 
         HttpServer server = HttpServer.create(new InetSocketAddress(PORT), 0);
+        ExecutorService executor = createExecutor();
+        int maxInFlight = intConfig("server.maxInFlight", 64);
+        int maxWaiting = intConfig("server.admission.queue", 128);
+        if (executor instanceof ThreadPoolExecutor) {
+            // A request (admitted or waiting) holds a worker, so a semaphore could never fill up:
+            // the pool's bounded queue is the only limit, and the filter just answers shed requests
+            maxInFlight = 0;
+            maxWaiting = 0;
+            System.out.println("🚦 Admission: limited by the executor queue (server.maxInFlight applies to virtual threads)");
+        }
+        AdmissionFilter admission = new AdmissionFilter(
+            maxInFlight,
+            maxWaiting,
+            intConfig("server.admission.wait.ms", 2000),
+            intConfig("server.retryAfter.seconds", 1)
+        );
+
+        SessionFilter session = new SessionFilter();
+        RateLimiter limiter = new RateLimiter();
+        limiter.startSweeping(intConfig("server.ratelimit.idle.ms", 300000));
+        // Keep cached user snapshots in step with every user write
+        dbManager.setUserWriteListener(sessions::userChanged);
 
-        // Serve Static Files (HTML, CSS, JS)
-        server.createContext("/", new StaticFileHandler());
+        // Serve Static Files (HTML, CSS, JS) from memory
+        StaticAssetCache assets = new StaticAssetCache(
+            Paths.get("public"),
+            intConfig("static.cache.maxFileBytes", 1048576),
+            intConfig("static.gzip.minBytes", 512)
+        );
+        assets.loadAll();
+        if (Boolean.parseBoolean(serverConfig.getProperty("static.cache.watch", "false").trim())) {
+            assets.startWatching();
+        }
+        register(server, "/", new StaticFileHandler(assets), admission);
 
         // API Endpoints
-        server.createContext("/api/login", new LoginHandler());
-        server.createContext("/api/books", new BooksHandler());
-        server.createContext("/api/borrow", new BorrowHandler());
-        server.createContext("/api/return", new ReturnHandler());
-        server.createContext("/api/users", new UsersHandler());
-        server.createContext("/api/register", new RegisterHandler()); // Added Register Handler
-        server.createContext("/api/favorites", new FavoritesHandler()); // Added Favorites Handler
-        server.createContext("/api/stats", new StatsHandler());
-
-        server.setExecutor(null); // creates a default executor
+        register(server, "/api/login", new LoginHandler(), rateLimit(limiter, "login"), admission);
+        register(server, "/api/logout", new LogoutHandler(), rateLimit(limiter, "logout"), admission);
+        register(server, "/api/books", new BooksHandler(), rateLimit(limiter, "books"), admission, session);
+        register(server, "/api/borrow", new BorrowHandler(), rateLimit(limiter, "borrow"), admission, session);
+        register(server, "/api/return", new ReturnHandler(), rateLimit(limiter, "return"), admission, session);
+        register(server, "/api/users", new UsersHandler(), rateLimit(limiter, "users"), admission, session);
+        register(server, "/api/register", new RegisterHandler(), rateLimit(limiter, "register"), admission); // Added Register Handler
+        register(server, "/api/favorites", new FavoritesHandler(), rateLimit(limiter, "favorites"), admission, session); // Added Favorites Handler
+        register(server, "/api/stats", new StatsHandler(), rateLimit(limiter, "stats"), admission);
+        register(server, "/api/search", new SearchHandler(false), rateLimit(limiter, "search"), admission, session);
+        register(server, "/api/search/fuzzy", new SearchHandler(true), rateLimit(limiter, "search.fuzzy"), admission, session);
+        // Bounded queue: when reads back up, new dashboards get a 503 instead of queueing behind them
+        int dashboardThreads = Math.max(1, intConfig("server.dashboard.threads", 4));
+        ExecutorService dashboardReads = new ThreadPoolExecutor(dashboardThreads, dashboardThreads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, intConfig("server.dashboard.queue", 64))),
+            runnable -> {
+                Thread t = new Thread(runnable, "dashboard-read");
+                t.setDaemon(true);
+                return t;
+            });
+        register(server, "/api/dashboard",
+            new DashboardHandler(dashboardReads, intConfig("server.dashboard.timeout.ms", 5000)),
+            rateLimit(limiter, "dashboard"), admission, session);
+        register(server, "/api/changes", new ChangesHandler(intConfig("changes.page.max", 1000)), rateLimit(limiter, "changes"), admission, session);
+
+        // Live copy counts; the stream outlives the request, so it holds no worker or admission slot
+        InventoryEventStream inventoryEvents = new InventoryEventStream(
+            intConfig("server.sse.maxClients", 100),
+            intConfig("server.sse.buffer", 256),
+            intConfig("server.sse.heartbeat.ms", 15000),
+            intConfig("server.sse.retry.ms", 3000),
+            intConfig("server.sse.stall.ms", 10000),
+            intConfig("server.sse.writer.threads", 2),
+            LibraryHttpServer::isVisibleTo
+        );
+        LibraryEventManager.getInstance().addObserver(inventoryEvents);
+        register(server, "/api/events", new EventsHandler(inventoryEvents), rateLimit(limiter, "events"), admission, session);
+        register(server, "/api/events/ticket", new EventTicketHandler(), rateLimit(limiter, "events"), admission, session);
+
+        server.setExecutor(executor);
+        
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            executor.shutdown();
+            dashboardReads.shutdown();
+            inventoryEvents.close();
+            limiter.stop();
+            LibraryEventManager.getInstance().shutdown();
+            assets.stopWatching();
+            dbManager.close();
+        }));
+        
         System.out.println("🌍 Web Server running at http://localhost:" + PORT + "/index.html");
         server.start();
     }
@@ -55,37 +171,512 @@ public class LibraryHttpServer {
         }
     }
 
+    /**
+     * Rate limit for one endpoint: server.ratelimit.<endpoint>.capacity / .perSecond,
+     * falling back to server.ratelimit.endpoint.*; every endpoint also draws on the client-wide bucket
+     */
+    private static Filter rateLimit(RateLimiter limiter, String endpoint) {
+        int capacity = intConfig("server.ratelimit.endpoint.capacity", 30);
+        double perSecond = doubleConfig("server.ratelimit.endpoint.perSecond", 10);
+        return new RateLimitFilter(limiter, endpoint,
+            new RateLimiter.Limit(intConfig("server.ratelimit." + endpoint + ".capacity", capacity),
+                    doubleConfig("server.ratelimit." + endpoint + ".perSecond", perSecond)),
+            new RateLimiter.Limit(intConfig("server.ratelimit.client.capacity", 120),
+                    doubleConfig("server.ratelimit.client.perSecond", 20)),
+            Boolean.parseBoolean(serverConfig.getProperty("server.ratelimit.enabled", "true").trim()));
+    }
+
+    private static HttpContext register(HttpServer server, String path, HttpHandler handler, Filter... filters) {
+        HttpContext context = server.createContext(path, handler);
+        for (Filter filter : filters) {
+            context.getFilters().add(filter);
+        }
+        return context;
+    }
+
+    // --- Server Configuration ---
+
+    private static Properties loadServerConfig() {
+        Properties props = new Properties();
+        try (FileInputStream fis = new FileInputStream("config.properties")) {
+            props.load(fis);
+        } catch (IOException e) {
+            System.err.println("⚠️  Warning: Could not load config.properties. Using default server settings.");
+        }
+        return props;
+    }
+
+    private static int intConfig(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(serverConfig.getProperty(key, String.valueOf(defaultValue)).trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static double doubleConfig(String key, double defaultValue) {
+        try {
+            return Double.parseDouble(serverConfig.getProperty(key, String.valueOf(defaultValue)).trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Build the request executor.
+     * "virtual" uses a virtual thread per request (Java 21+), "pool" a bounded platform pool.
+     */
+    private static ExecutorService createExecutor() {
+        String mode = serverConfig.getProperty("server.executor.mode", "pool").trim();
+        if ("virtual".equalsIgnoreCase(mode)) {
+            try {
+                // Looked up reflectively so the project still builds on Java 17
+                ExecutorService virtual = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                System.out.println("🧵 Executor: virtual threads");
+                return virtual;
+            } catch (ReflectiveOperationException e) {
+                System.err.println("⚠️  Virtual threads need Java 21+. Falling back to a bounded thread pool.");
+            }
+        }
+
+        int threads = intConfig("server.executor.threads", 0);
+        if (threads <= 0) threads = Runtime.getRuntime().availableProcessors() * 2;
+        int queue = Math.max(1, intConfig("server.executor.queue", 100));
+
+        AtomicInteger counter = new AtomicInteger();
+        int shedThreads = Math.max(1, intConfig("server.shed.threads", 2));
+        // Bounded too: a shed request still holds its socket until it has been answered.
+        // When this is full, execute() throws and the server closes the connection unanswered.
+        ThreadPoolExecutor shedPool = new ThreadPoolExecutor(shedThreads, shedThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, intConfig("server.shed.queue", 256))),
+                runnable -> {
+                    Thread t = new Thread(runnable, "http-shed-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                (runnable, executor) -> {
+                    long dropped = SHED_DROPPED.incrementAndGet();
+                    if (dropped % 1000 == 1) {
+                        System.err.println("⚠️  Overloaded: " + dropped + " connections closed without a response");
+                    }
+                    throw new RejectedExecutionException("Shed queue full");
+                });
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queue),
+                runnable -> {
+                    Thread t = new Thread(runnable, "http-worker-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                // Queue full: answer 503 from a small separate pool. The task still parses the request
+                // headers, so it must never run on the dispatcher, where a slow client would stall everyone.
+                (runnable, executor) -> shedPool.execute(() -> AdmissionFilter.runShed(runnable)));
+        System.out.println("🧵 Executor: " + threads + " worker threads, queue " + queue);
+        return pool;
+    }
+
+    /**
+     * Admission control: caps concurrent requests and rejects with 503 + Retry-After when saturated
+     */
+    static class AdmissionFilter extends Filter {
+        private static final ThreadLocal<Boolean> SHED = new ThreadLocal<>();
+
+        // null = no limit of its own (pool executor); only shed requests are rejected
+        private final Semaphore inFlight;
+        private final int maxWaiting;
+        private final long waitMillis;
+        private final int retryAfterSeconds;
+        private final AtomicInteger waiting = new AtomicInteger();
+
+        /**
+         * @param maxInFlight requests handled at once; 0 or less leaves concurrency to the executor
+         */
+        AdmissionFilter(int maxInFlight, int maxWaiting, long waitMillis, int retryAfterSeconds) {
+            this.inFlight = maxInFlight > 0 ? new Semaphore(maxInFlight) : null;
+            this.maxWaiting = Math.max(0, maxWaiting);
+            this.waitMillis = Math.max(0, waitMillis);
+            this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+        }
+
+        static void runShed(Runnable task) {
+            SHED.set(Boolean.TRUE);
+            try {
+                task.run();
+            } finally {
+                SHED.remove();
+            }
+        }
+
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            if (Boolean.TRUE.equals(SHED.get()) || !acquire()) {
+                reject(exchange);
+                return;
+            }
+            if (inFlight == null) {
+                chain.doFilter(exchange);
+                return;
+            }
+            try {
+                chain.doFilter(exchange);
+            } finally {
+                inFlight.release();
+            }
+        }
+
+        private boolean acquire() {
+            if (inFlight == null || inFlight.tryAcquire()) return true;
+            if (waiting.incrementAndGet() > maxWaiting) {
+                waiting.decrementAndGet();
+                return false;
+            }
+            try {
+                return inFlight.tryAcquire(waitMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+
+        private void reject(HttpExchange exchange) throws IOException {
+            exchange.getRequestBody().close();
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+            sendResponse(exchange, 503, "Server busy, please retry");
+        }
+
+        @Override
+        public String description() {
+            return "Admission control (max in-flight requests)";
+        }
+    }
+
+    /**
+     * Resolves "Authorization: Bearer <token>" to a session for the handler.
+     * Requests without a token pass through unchanged; an unknown or expired token gets 401.
+     */
+    static class SessionFilter extends Filter {
+        // Handlers run on the filter's thread, so the session is handed over thread-locally
+        private static final ThreadLocal<SessionStore.Session> CURRENT = new ThreadLocal<>();
+
+        static SessionStore.Session current() {
+            return CURRENT.get();
+        }
+
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            String token = bearerToken(exchange);
+            if (token == null) {
+                chain.doFilter(exchange);
+                return;
+            }
+            SessionStore.Session session = sessions.touch(token);
+            if (session == null) {
+                exchange.getRequestBody().close();
+                exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                sendResponse(exchange, 401, "Session expired, please log in again");
+                return;
+            }
+            CURRENT.set(session);
+            try {
+                chain.doFilter(exchange);
+            } finally {
+                CURRENT.remove();
+            }
+        }
+
+        @Override
+        public String description() {
+            return "Session lookup (bearer token)";
+        }
+    }
+
+    /**
+     * Per-client token buckets: one for this endpoint and one across all endpoints.
+     * Clients are told apart by their session when they send a valid token, otherwise by IP.
+     * Runs before admission control, so a client over its limit never takes a request slot;
+     * it gets 429 with Retry-After, and every response carries the X-RateLimit-* headers.
+     */
+    static class RateLimitFilter extends Filter {
+        private final RateLimiter limiter;
+        private final String endpoint;
+        private final RateLimiter.Limit endpointLimit;
+        private final RateLimiter.Limit clientLimit;
+        private final boolean enabled;
+
+        RateLimitFilter(RateLimiter limiter, String endpoint, RateLimiter.Limit endpointLimit,
+                        RateLimiter.Limit clientLimit, boolean enabled) {
+            this.limiter = limiter;
+            this.endpoint = endpoint;
+            this.endpointLimit = endpointLimit;
+            this.clientLimit = clientLimit;
+            this.enabled = enabled;
+        }
+
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            if (!enabled) {
+                chain.doFilter(exchange);
+                return;
+            }
+            String client = clientKey(exchange);
+            RateLimiter.Decision decision = limiter.tryAcquire(client + "|" + endpoint, endpointLimit);
+            if (decision.isAllowed()) {
+                RateLimiter.Decision overall = limiter.tryAcquire(client, clientLimit);
+                if (!overall.isAllowed()) {
+                    // Refused after all: the endpoint bucket must not pay for it
+                    limiter.refund(client + "|" + endpoint, endpointLimit);
+                }
+                // Report whichever bucket is closer to running out
+                if (!overall.isAllowed() || overall.getRemaining() < decision.getRemaining()) {
+                    decision = overall;
+                }
+            }
+
+            Headers headers = exchange.getResponseHeaders();
+            headers.set("X-RateLimit-Limit", String.valueOf(decision.getLimit()));
+            headers.set("X-RateLimit-Remaining", String.valueOf(decision.getRemaining()));
+            headers.set("X-RateLimit-Reset", String.valueOf(decision.getWaitSeconds()));
+            if (!decision.isAllowed()) {
+                exchange.getRequestBody().close();
+                headers.set("Retry-After", String.valueOf(decision.getWaitSeconds()));
+                sendResponse(exchange, 429, "Too many requests, please slow down");
+                return;
+            }
+            chain.doFilter(exchange);
+        }
+
+        private static String clientKey(HttpExchange exchange) {
+            String token = bearerToken(exchange);
+            SessionStore.Session session = token != null ? sessions.touch(token) : null;
+            if (session != null) return "user:" + session.getUsername();
+            return "ip:" + exchange.getRemoteAddress().getAddress().getHostAddress();
+        }
+
+        @Override
+        public String description() {
+            return "Rate limiting (" + endpoint + ")";
+        }
+    }
+
+    /**
+     * 503 for a read whose data (catalog or users) can't be loaded right now
+     */
+    static void sendUnavailable(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Retry-After", String.valueOf(intConfig("server.retryAfter.seconds", 1)));
+        sendResponse(exchange, 503, "Data unavailable, please retry");
+    }
+
+    static String bearerToken(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.regionMatches(true, 0, "Bearer ", 0, 7)) return null;
+        String token = header.substring(7).trim();
+        return token.isEmpty() ? null : token;
+    }
+
+    /**
+     * Name of the caller: the session's user when a token was sent, otherwise the name the request gives
+     */
+    static String callerName(String claimed) {
+        SessionStore.Session session = SessionFilter.current();
+        return session != null ? session.getUsername() : claimed;
+    }
+
+    /**
+     * The caller as a User: from the session's snapshot (no database round trip) or looked up by name
+     */
+    static User caller(String claimed) {
+        SessionStore.Session session = SessionFilter.current();
+        return session != null ? sessions.userOf(session) : dbManager.loadUser(claimed);
+    }
+
     // --- Handlers ---
 
     static class StaticFileHandler implements HttpHandler {
+        private static final long TRANSFER_CHUNK = 256 * 1024;
+        private final StaticAssetCache assets;
+
+        StaticFileHandler(StaticAssetCache assets) {
+            this.assets = assets;
+        }
+
         @Override
         public void handle(HttpExchange exchange) throws IOException {
+            String method = exchange.getRequestMethod();
+            boolean head = "HEAD".equals(method);
+            if (!head && !"GET".equals(method)) {
+                sendResponse(exchange, 405, "Method Not Allowed");
+                return;
+            }
             String path = exchange.getRequestURI().getPath();
             if (path.equals("/")) path = "/index.html";
             
             // Security: Prevent accessing files outside public folder
-            if (path.contains("..")) {
+            if (path.contains("..") || assets.resolve(path) == null) {
                 sendResponse(exchange, 403, "Forbidden");
                 return;
             }
 
-            Path file = Paths.get("public" + path);
-            if (Files.exists(file) && !Files.isDirectory(file)) {
-                String mimeType = "text/plain";
-                if (path.endsWith(".html")) mimeType = "text/html";
-                else if (path.endsWith(".css")) mimeType = "text/css";
-                else if (path.endsWith(".js")) mimeType = "application/javascript";
-                
-                exchange.getResponseHeaders().set("Content-Type", mimeType);
-                byte[] bytes = Files.readAllBytes(file);
-                exchange.sendResponseHeaders(200, bytes.length);
-                OutputStream os = exchange.getResponseBody();
+            StaticAssetCache.Asset asset = assets.get(path);
+            if (asset == null) {
+                Path file = assets.resolve(path);
+                if (Files.isRegularFile(file)) {
+                    sendLargeFile(exchange, file, head);
+                } else {
+                    sendResponse(exchange, 404, "File Not Found: " + path);
+                }
+                return;
+            }
+
+            boolean gzip = asset.getGzipBytes() != null
+                    && acceptsEncoding(exchange.getRequestHeaders().getFirst("Accept-Encoding"), "gzip");
+            String etag = gzip ? asset.getGzipEtag() : asset.getEtag();
+
+            Headers headers = exchange.getResponseHeaders();
+            headers.set("ETag", etag);
+            // Always revalidate; unchanged files cost a 304 with no body
+            headers.set("Cache-Control", "no-cache");
+            headers.set("Vary", "Accept-Encoding");
+
+            if (etagMatches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+
+            byte[] bytes = gzip ? asset.getGzipBytes() : asset.getBytes();
+            headers.set("Content-Type", asset.getContentType());
+            if (gzip) headers.set("Content-Encoding", "gzip");
+            if (head) {
+                headers.set("Content-Length", String.valueOf(bytes.length));
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+                return;
+            }
+            exchange.sendResponseHeaders(200, bytes.length == 0 ? -1 : bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
                 os.write(bytes);
-                os.close();
-            } else {
-                sendResponse(exchange, 404, "File Not Found: " + path);
             }
         }
+
+        /**
+         * Files too large to keep in memory are streamed straight from a FileChannel,
+         * one bounded chunk at a time, so heap use doesn't grow with file size.
+         * Honours a single byte range ("Range: bytes=...") with 206 / 416.
+         */
+        private static void sendLargeFile(HttpExchange exchange, Path file, boolean head) throws IOException {
+            Headers headers = exchange.getResponseHeaders();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                String etag = "\"" + Long.toHexString(size) + "-"
+                        + Long.toHexString(Files.getLastModifiedTime(file).toMillis()) + "\"";
+                headers.set("Content-Type", StaticAssetCache.contentTypeOf(file.getFileName().toString()));
+                headers.set("Accept-Ranges", "bytes");
+                headers.set("ETag", etag);
+                headers.set("Cache-Control", "no-cache");
+
+                if (etagMatches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+
+                long start = 0;
+                long length = size;
+                int status = 200;
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+                // A stale If-Range means the client's partial copy is outdated: send it all
+                if (range != null && (ifRange == null || ifRange.trim().equals(etag))) {
+                    long[] bounds = parseRange(range, size);
+                    if (bounds == null) {
+                        headers.set("Content-Range", "bytes */" + size);
+                        exchange.sendResponseHeaders(416, -1);
+                        exchange.close();
+                        return;
+                    }
+                    if (bounds.length == 2) {
+                        start = bounds[0];
+                        length = bounds[1] - bounds[0] + 1;
+                        status = 206;
+                        headers.set("Content-Range", "bytes " + bounds[0] + "-" + bounds[1] + "/" + size);
+                    }
+                }
+
+                if (head) {
+                    headers.set("Content-Length", String.valueOf(length));
+                    exchange.sendResponseHeaders(status, -1);
+                    exchange.close();
+                    return;
+                }
+                // A zero-length body must be announced as -1 (0 means chunked)
+                exchange.sendResponseHeaders(status, length == 0 ? -1 : length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    WritableByteChannel out = Channels.newChannel(os);
+                    long position = start;
+                    long end = start + length;
+                    while (position < end) {
+                        long sent = channel.transferTo(position, Math.min(TRANSFER_CHUNK, end - position), out);
+                        if (sent <= 0) break;
+                        position += sent;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Parse a Range header against a file size.
+         * Returns {first, last} for one satisfiable range, an empty array when the header
+         * should be ignored (not bytes, malformed or multiple ranges), or null if unsatisfiable.
+         */
+        static long[] parseRange(String header, long size) {
+            String value = header.trim();
+            if (!value.startsWith("bytes=") || value.indexOf(',') >= 0) return new long[0];
+            String spec = value.substring(6).trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) return new long[0];
+            try {
+                String from = spec.substring(0, dash).trim();
+                String to = spec.substring(dash + 1).trim();
+                long first;
+                long last;
+                if (from.isEmpty()) {
+                    // Suffix range: the last N bytes
+                    long suffix = Long.parseLong(to);
+                    if (suffix <= 0) return null;
+                    first = Math.max(0, size - suffix);
+                    last = size - 1;
+                } else {
+                    first = Long.parseLong(from);
+                    last = size - 1;
+                    if (!to.isEmpty()) {
+                        long requested = Long.parseLong(to);
+                        if (requested < first) return new long[0]; // invalid, ignore the header
+                        last = Math.min(requested, size - 1);
+                    }
+                }
+                if (first >= size || size == 0) return null;
+                return new long[] { first, last };
+            } catch (NumberFormatException e) {
+                return new long[0];
+            }
+        }
+
+        /**
+         * If-None-Match check (weak comparison, as RFC 9110 requires for this header)
+         */
+        private static boolean etagMatches(String ifNoneMatch, String etag) {
+            if (ifNoneMatch == null) return false;
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*")) return true;
+                if (tag.startsWith("W/")) tag = tag.substring(2);
+                if (tag.equals(etag)) return true;
+            }
+            return false;
+        }
     }
 
     static class LoginHandler implements HttpHandler {
@@ -102,6 +693,7 @@ public class LibraryHttpServer {
                     response.put("success", true);
                     response.put("userType", user.userType.getType());
                     response.put("username", user.username);
+                    response.put("token", sessions.create(user.username).getToken());
                 } else {
                     response.put("success", false);
                     response.put("message", "Invalid credentials");
@@ -113,6 +705,22 @@ public class LibraryHttpServer {
         }
     }
     
+    static class LogoutHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("POST".equals(exchange.getRequestMethod())) {
+                exchange.getRequestBody().close();
+                String token = bearerToken(exchange);
+                if (token != null) sessions.end(token);
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                sendJsonResponse(exchange, response);
+            } else {
+                sendResponse(exchange, 405, "Method Not Allowed");
+            }
+        }
+    }
+    
     static class RegisterHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
@@ -152,33 +760,30 @@ public class LibraryHttpServer {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             if ("GET".equals(exchange.getRequestMethod())) {
-                String query = exchange.getRequestURI().getQuery();
-                String currentUser = null;
-                if (query != null && query.startsWith("username=")) {
-                    currentUser = query.split("=")[1];
+                Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+                String currentUser = callerName(params.get("username"));
+
+                // Any paging, sorting or filter parameter switches to the paginated response
+                for (String key : PAGE_PARAMS) {
+                    if (params.containsKey(key)) {
+                        sendBooksPage(exchange, params, currentUser);
+                        return;
+                    }
                 }
 
-                // Load raw documents
-                List<org.bson.Document> allBooks = dbManager.loadBooksWithDetails();
+                // Load catalog documents (served from the in-process cache)
+                List<org.bson.Document> allBooks;
+                try {
+                    allBooks = dbManager.loadCatalog();
+                } catch (CatalogCache.UnavailableException e) {
+                    sendUnavailable(exchange);
+                    return;
+                }
                 List<Map<String, Object>> responseList = new ArrayList<>();
 
                 for (org.bson.Document doc : allBooks) {
-                    String owner = doc.getString("owner");
-                    String visibility = doc.getString("visibility");
-                    
-                    // Default legacy books (no visibility set) are treated as PUBLIC
-                    boolean isPublic = visibility == null || "PUBLIC".equalsIgnoreCase(visibility);
-                    boolean isOwner = currentUser != null && currentUser.equals(owner);
-
-                    if (isPublic || isOwner || "admin".equals(currentUser)) {
-                        Map<String, Object> bookInfo = new HashMap<>();
-                        bookInfo.put("title", doc.getString("title"));
-                        bookInfo.put("copies", doc.getInteger("copies"));
-                        bookInfo.put("type", doc.getString("bookType"));
-                        bookInfo.put("category", doc.getString("category"));
-                        bookInfo.put("visibility", visibility != null ? visibility : "PUBLIC");
-                        bookInfo.put("owner", owner != null ? owner : "System");
-                        responseList.add(bookInfo);
+                    if (isVisibleTo(doc, currentUser)) {
+                        responseList.add(toBookInfo(doc));
                     }
                 }
                 sendJsonResponse(exchange, responseList);
@@ -206,6 +811,116 @@ public class LibraryHttpServer {
                sendJsonResponse(exchange, response);
             }
         }
+
+        private static final String[] PAGE_PARAMS = { "limit", "cursor", "sort", "order", "category", "type", "available", "owner" };
+        private static final int DEFAULT_PAGE_SIZE = 50;
+        private static final int MAX_PAGE_SIZE = 500;
+
+        /**
+         * Keyset-paginated catalog: filters and sort run in MongoDB, one page per request
+         */
+        private void sendBooksPage(HttpExchange exchange, Map<String, String> params, String currentUser) throws IOException {
+            int limit;
+            try {
+                limit = Integer.parseInt(params.getOrDefault("limit", String.valueOf(DEFAULT_PAGE_SIZE)));
+            } catch (NumberFormatException e) {
+                sendResponse(exchange, 400, "Invalid limit");
+                return;
+            }
+            limit = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+            String sortKey = params.getOrDefault("sort", "title");
+            if (!MongoDBManager.isBookSortKey(sortKey)) {
+                sendResponse(exchange, 400, "Invalid sort key: " + sortKey);
+                return;
+            }
+            boolean descending = "desc".equalsIgnoreCase(params.get("order"));
+            Boolean available = params.containsKey("available") ? Boolean.valueOf(params.get("available")) : null;
+
+            org.bson.conversions.Bson filter = dbManager.buildBookFilter(currentUser,
+                    params.get("category"), params.get("type"), available, params.get("owner"));
+
+            MongoDBManager.BookPage page;
+            try {
+                page = dbManager.loadBooksPage(filter, sortKey, descending, params.get("cursor"), limit);
+            } catch (IllegalArgumentException e) {
+                sendResponse(exchange, 400, e.getMessage());
+                return;
+            }
+
+            List<Map<String, Object>> items = new ArrayList<>();
+            for (org.bson.Document doc : page.getBooks()) {
+                items.add(toBookInfo(doc));
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("books", items);
+            response.put("limit", limit);
+            response.put("hasMore", page.hasMore());
+            response.put("nextCursor", page.getNextCursor());
+            sendJsonResponse(exchange, response);
+        }
+    }
+
+    static class SearchHandler implements HttpHandler {
+        private static final int DEFAULT_LIMIT = 20;
+        private static final int MAX_LIMIT = 200;
+        private final boolean fuzzy;
+
+        /**
+         * @param fuzzy tolerate typos (optional "distance" parameter, default and max 2)
+         */
+        SearchHandler(boolean fuzzy) {
+            this.fuzzy = fuzzy;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendResponse(exchange, 405, "Method Not Allowed");
+                return;
+            }
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            String query = params.getOrDefault("q", "").trim();
+            String currentUser = callerName(params.get("username"));
+            int limit;
+            try {
+                limit = Integer.parseInt(params.getOrDefault("limit", String.valueOf(DEFAULT_LIMIT)));
+            } catch (NumberFormatException e) {
+                sendResponse(exchange, 400, "Invalid limit");
+                return;
+            }
+            limit = Math.max(1, Math.min(limit, MAX_LIMIT));
+
+            List<org.bson.Document> matches;
+            try {
+                if (fuzzy) {
+                    int distance;
+                    try {
+                        distance = Integer.parseInt(params.getOrDefault("distance",
+                                String.valueOf(CatalogSearchIndex.MAX_FUZZY_DISTANCE)));
+                    } catch (NumberFormatException e) {
+                        sendResponse(exchange, 400, "Invalid distance");
+                        return;
+                    }
+                    matches = dbManager.fuzzySearchCatalog(query, distance, limit * 2);
+                } else {
+                    matches = dbManager.searchCatalog(query, limit * 2);
+                }
+            } catch (CatalogCache.UnavailableException e) {
+                sendUnavailable(exchange);
+                return;
+            }
+
+            // Over-fetch a little so hidden private books don't leave the page short
+            List<Map<String, Object>> results = new ArrayList<>();
+            for (org.bson.Document doc : matches) {
+                if (results.size() >= limit) break;
+                if (isVisibleTo(doc, currentUser)) {
+                    results.add(toBookInfo(doc));
+                }
+            }
+            sendJsonResponse(exchange, results);
+        }
     }
 
     static class FavoritesHandler implements HttpHandler {
@@ -215,7 +930,7 @@ public class LibraryHttpServer {
                 String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
                 Map<String, String> data = gson.fromJson(body, Map.class);
                 
-                String username = data.get("username");
+                String username = callerName(data.get("username"));
                 String bookTitle = data.get("bookTitle");
                 
                 boolean success = dbManager.toggleFavorite(username, bookTitle);
@@ -235,16 +950,14 @@ public class LibraryHttpServer {
                 String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
                 Map<String, String> data = gson.fromJson(body, Map.class);
                 
-                String username = data.get("username");
+                String username = callerName(data.get("username"));
                 String bookTitle = data.get("bookTitle");
                 
-                User user = dbManager.loadUser(username);
-                Map<String, Integer> books = dbManager.loadAllBooks();
-                Map<String, String> bookTypes = dbManager.loadBookTypes();
+                User user = caller(username);
                 
                 Map<String, Object> response = new HashMap<>();
                 
-                if (user != null && books.getOrDefault(bookTitle, 0) > 0) {
+                if (user != null) {
                     int maxBooks = user.userType.getType().equalsIgnoreCase("authorized") ? 3 : 0;
                      if(username.equals("admin")) maxBooks = 10;
 
@@ -255,27 +968,43 @@ public class LibraryHttpServer {
                          response.put("success", false);
                         response.put("message", "Already borrowed this book.");
                     } else {
-                        // Perform Borrow
-                        user.borrowedBooks.add(bookTitle);
-                        
-                        // Date Logic
-                        String typeStr = bookTypes.getOrDefault(bookTitle, "Regular");
-                        int borrowDays = "Reference".equalsIgnoreCase(typeStr) ? 5 : 14; // Simple logic matching factory
+                        // Reserve a copy atomically (only succeeds while copies > 0)
+                        MongoDBManager.InventoryResult reservation = dbManager.reserveCopy(bookTitle);
                         
-                        java.time.LocalDate today = java.time.LocalDate.now();
-                        java.time.LocalDate due = today.plusDays(borrowDays);
-                        
-                        user.borrowDates.put(bookTitle, today.toString());
-                        user.dueDates.put(bookTitle, due.toString());
-                        
-                        // Decrease copy
-                        int newCopies = books.get(bookTitle) - 1;
-                        dbManager.updateBookCopies(bookTitle, newCopies);
-                        dbManager.saveUser(user);
-                        dbManager.saveTransaction(username, bookTitle, "BORROW", today.toString());
-                        
-                        response.put("success", true);
-                        response.put("message", "Book borrowed! Due date: " + due.toString());
+                        if (reservation.getStatus() == MongoDBManager.InventoryResult.Status.SOLD_OUT) {
+                            response.put("success", false);
+                            response.put("message", "Book is sold out. No copies available.");
+                        } else if (!reservation.isSuccess()) {
+                            response.put("success", false);
+                            response.put("message", "Book not available or user not found.");
+                        } else {
+                            // Perform Borrow
+                            user.borrowedBooks.add(bookTitle);
+                            
+                            // Date Logic
+                            String typeStr = reservation.getBookType();
+                            int borrowDays = "Reference".equalsIgnoreCase(typeStr) ? 5 : 14; // Simple logic matching factory
+                            
+                            java.time.LocalDate today = java.time.LocalDate.now();
+                            java.time.LocalDate due = today.plusDays(borrowDays);
+                            
+                            user.borrowDates.put(bookTitle, today.toString());
+                            user.dueDates.put(bookTitle, due.toString());
+                            
+                            if (dbManager.recordLoan(user, bookTitle)) {
+                                dbManager.saveTransaction(username, bookTitle, "BORROW", today.toString());
+                                LibraryEventManager.getInstance().notifyObservers(LibraryEventType.BOOK_BORROWED,
+                                    username + " borrowed " + bookTitle,
+                                    Map.of("title", bookTitle, "copies", reservation.getCopies(), "book", reservation.getBook()));
+                                response.put("success", true);
+                                response.put("message", "Book borrowed! Due date: " + due.toString());
+                            } else {
+                                // Give the reserved copy back so inventory stays consistent
+                                dbManager.releaseCopy(bookTitle);
+                                response.put("success", false);
+                                response.put("message", "Failed to record loan. Please try again.");
+                            }
+                        }
                     }
                 } else {
                      response.put("success", false);
@@ -293,11 +1022,10 @@ public class LibraryHttpServer {
                 String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
                 Map<String, String> data = gson.fromJson(body, Map.class);
                 
-                String username = data.get("username");
+                String username = callerName(data.get("username"));
                 String bookTitle = data.get("bookTitle");
                 
-                User user = dbManager.loadUser(username);
-                Map<String, Integer> books = dbManager.loadAllBooks();
+                User user = caller(username);
                 
                 Map<String, Object> response = new HashMap<>();
                 
@@ -321,9 +1049,13 @@ public class LibraryHttpServer {
                     user.borrowDates.remove(bookTitle);
                     user.dueDates.remove(bookTitle);
                     
-                    int newCopies = books.getOrDefault(bookTitle, 0) + 1;
-                    dbManager.updateBookCopies(bookTitle, newCopies);
-                    dbManager.saveUser(user);
+                    MongoDBManager.InventoryResult release = dbManager.releaseCopy(bookTitle);
+                    dbManager.recordReturn(user, bookTitle, fineAmount);
+                    if (release.isSuccess()) {
+                        LibraryEventManager.getInstance().notifyObservers(LibraryEventType.BOOK_RETURNED,
+                            username + " returned " + bookTitle,
+                            Map.of("title", bookTitle, "copies", release.getCopies(), "book", release.getBook()));
+                    }
                      
                     String today = java.time.LocalDate.now().toString();
                     dbManager.saveTransaction(username, bookTitle, "RETURN", today);
@@ -347,7 +1079,7 @@ public class LibraryHttpServer {
                  // If query contains "username=...", returns specific user details
                  if (query != null && query.startsWith("username=")) {
                      String username = query.split("=")[1];
-                     User user = dbManager.loadUser(username);
+                     User user = username.equals(callerName(null)) ? caller(username) : dbManager.loadUser(username);
                      if (user != null) {
                          sendJsonResponse(exchange, user);
                      } else {
@@ -361,30 +1093,414 @@ public class LibraryHttpServer {
          }
      }
      
+     static class EventsHandler implements HttpHandler {
+         private final InventoryEventStream stream;
+
+         EventsHandler(InventoryEventStream stream) {
+             this.stream = stream;
+         }
+
+         @Override
+         public void handle(HttpExchange exchange) throws IOException {
+             if (!"GET".equals(exchange.getRequestMethod())) {
+                 sendResponse(exchange, 405, "Method Not Allowed");
+                 return;
+             }
+             // EventSource can't send headers, so browsers pass a single-use ticket
+             // (from /api/events/ticket) rather than their session token.
+             // Without a session the stream only carries PUBLIC books.
+             String viewer = callerName(null);
+             String ticket = parseQuery(exchange.getRequestURI().getRawQuery()).get("ticket");
+             if (ticket != null) {
+                 SessionStore.Session session = sessions.redeemTicket(ticket);
+                 if (session == null) {
+                     sendResponse(exchange, 401, "Ticket expired or already used");
+                     return;
+                 }
+                 viewer = session.getUsername();
+             }
+             // On success the exchange stays open; the stream's writers own it from here
+             if (!stream.open(exchange, viewer)) {
+                 exchange.getResponseHeaders().set("Retry-After", "5");
+                 sendResponse(exchange, 503, "Too many event streams");
+             }
+         }
+     }
+     
+     /**
+      * POST with the session's bearer token: a short-lived, single-use ticket for /api/events?ticket=
+      */
+     static class EventTicketHandler implements HttpHandler {
+         @Override
+         public void handle(HttpExchange exchange) throws IOException {
+             if (!"POST".equals(exchange.getRequestMethod())) {
+                 sendResponse(exchange, 405, "Method Not Allowed");
+                 return;
+             }
+             exchange.getRequestBody().close();
+             SessionStore.Session session = SessionFilter.current();
+             if (session == null) {
+                 exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                 sendResponse(exchange, 401, "Log in first");
+                 return;
+             }
+             Map<String, Object> response = new HashMap<>();
+             response.put("ticket", sessions.issueTicket(session));
+             response.put("expiresInSeconds", SessionStore.TICKET_TTL_MILLIS / 1000);
+             sendJsonResponse(exchange, response);
+         }
+     }
+
      static class StatsHandler implements HttpHandler {
          @Override
          public void handle(HttpExchange exchange) throws IOException {
-              Map<String, Long> stats = new HashMap<>();
-              Map<String, User> users = dbManager.loadAllUsers();
-              Map<String, Integer> books = dbManager.loadAllBooks();
-              
-              stats.put("totalUsers", (long) users.size());
-              stats.put("totalBooks", (long) books.size());
-              long borrowedCount = users.values().stream().mapToLong(u -> u.borrowedBooks.size()).sum();
-              stats.put("activeBorrows", borrowedCount);
-              
-              sendJsonResponse(exchange, stats);
+              sendJsonResponse(exchange, statsView());
          }
      }
 
+    /**
+     * Dashboard totals. Maintained incrementally on every write, so this is a single document read.
+     */
+    static Map<String, Object> statsView() {
+        Map<String, Object> stats = new HashMap<>();
+        org.bson.Document totals = dbManager.getLibraryStats();
+        for (String field : new String[] { LibraryStats.TOTAL_USERS, LibraryStats.TOTAL_BOOKS,
+                LibraryStats.TOTAL_COPIES, LibraryStats.ACTIVE_BORROWS, LibraryStats.OVERDUE_LOANS }) {
+            Object value = totals.get(field);
+            stats.put(field, value instanceof Number ? ((Number) value).longValue() : 0L);
+        }
+        Object fines = totals.get(LibraryStats.OUTSTANDING_FINES);
+        stats.put(LibraryStats.OUTSTANDING_FINES, fines instanceof Number ? ((Number) fines).doubleValue() : 0.0);
+        stats.put("catalogCacheHits", dbManager.getCatalogCache().getHits());
+        stats.put("catalogCacheMisses", dbManager.getCatalogCache().getMisses());
+        return stats;
+    }
+
+    /**
+     * Everything the dashboard shows, in one response: visible books with favourite flags,
+     * the caller's loans and favourites, stats, and (for admin) the user list.
+     * The underlying reads run concurrently on a small dedicated pool.
+     */
+    static class DashboardHandler implements HttpHandler {
+        private final ExecutorService readPool;
+        private final long timeoutMillis;
+
+        DashboardHandler(ExecutorService readPool, long timeoutMillis) {
+            this.readPool = readPool;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendResponse(exchange, 405, "Method Not Allowed");
+                return;
+            }
+            String username = callerName(parseQuery(exchange.getRequestURI().getRawQuery()).get("username"));
+            if (username == null || username.isEmpty()) {
+                sendResponse(exchange, 400, "Missing username");
+                return;
+            }
+            boolean admin = "admin".equals(username);
+
+            // Signed in: the user comes from the session snapshot instead of a query
+            SessionStore.Session session = SessionFilter.current();
+            List<CompletableFuture<?>> reads = new ArrayList<>();
+            CompletableFuture<User> user;
+            CompletableFuture<List<org.bson.Document>> catalog;
+            CompletableFuture<Map<String, Object>> stats;
+            CompletableFuture<Map<String, User>> allUsers;
+            try {
+                user = read(reads, () -> session != null ? sessions.userOf(session) : dbManager.loadUser(username));
+                catalog = read(reads, dbManager::loadCatalog);
+                stats = read(reads, LibraryHttpServer::statsView);
+                allUsers = admin
+                        ? read(reads, () -> dbManager.loadAllUsers(
+                                Projections.include("userType", "borrowedBooks", "totalFine"), 0))
+                        : CompletableFuture.completedFuture(null);
+            } catch (RejectedExecutionException e) {
+                cancelAll(reads);
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(intConfig("server.retryAfter.seconds", 1)));
+                sendResponse(exchange, 503, "Dashboard busy, please retry");
+                return;
+            }
+
+            try {
+                CompletableFuture.allOf(user, catalog, stats, allUsers).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Reads still queued are skipped; running ones finish but nobody waits for them
+                cancelAll(reads);
+                sendResponse(exchange, 504, "Dashboard timed out");
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                sendResponse(exchange, 503, "Interrupted");
+                return;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof CatalogCache.UnavailableException) {
+                    sendUnavailable(exchange);
+                    return;
+                }
+                System.err.println("❌ Dashboard read failed: " + e.getCause());
+                sendResponse(exchange, 500, "Dashboard unavailable");
+                return;
+            }
+
+            User me = user.join();
+            if (me == null) {
+                sendResponse(exchange, 404, "User not found");
+                return;
+            }
+
+            Map<String, Object> userView = new HashMap<>();
+            userView.put("username", me.username);
+            userView.put("userType", me.userType.getType());
+            userView.put("favourites", me.favourites);
+            userView.put("borrowedBooks", me.borrowedBooks);
+            userView.put("borrowDates", me.borrowDates);
+            userView.put("dueDates", me.dueDates);
+            userView.put("totalFine", me.totalFine);
+
+            // One pass over the catalog: visibility filter and favourite flag together
+            Set<String> favourites = new HashSet<>(me.favourites);
+            List<Map<String, Object>> books = new ArrayList<>();
+            for (org.bson.Document doc : catalog.join()) {
+                if (isVisibleTo(doc, username)) {
+                    Map<String, Object> info = toBookInfo(doc);
+                    info.put("favorite", favourites.contains(doc.getString("title")));
+                    books.add(info);
+                }
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("user", userView);
+            response.put("books", books);
+            response.put("stats", stats.join());
+            if (admin) {
+                List<Map<String, Object>> users = new ArrayList<>();
+                for (User u : allUsers.join().values()) {
+                    Map<String, Object> row = new HashMap<>();
+                    row.put("username", u.username);
+                    row.put("userType", u.userType.getType());
+                    row.put("borrowedBooks", u.borrowedBooks);
+                    row.put("totalFine", u.totalFine);
+                    users.add(row);
+                }
+                response.put("users", users);
+            }
+            sendJsonResponse(exchange, response);
+        }
+
+        private <T> CompletableFuture<T> read(List<CompletableFuture<?>> reads, Supplier<T> supplier) {
+            CompletableFuture<T> future = CompletableFuture.supplyAsync(supplier, readPool);
+            reads.add(future);
+            return future;
+        }
+
+        private static void cancelAll(List<CompletableFuture<?>> reads) {
+            for (CompletableFuture<?> read : reads) {
+                read.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Incremental sync: GET /api/changes?since=<cursor>&username=<viewer>[&limit=n]
+     * Returns the books and users written after that cursor with their current state,
+     * plus the cursor to ask from next. "resync": true means the cursor is no longer
+     * covered by the log (or none was given); reload /api/books (and /api/users) and
+     * continue from "cursor". A book the viewer can't see is reported as a delete, and only
+     * to viewers that could see it before; only admin receives other users.
+     */
+    static class ChangesHandler implements HttpHandler {
+        private final int maxPage;
+
+        ChangesHandler(int maxPage) {
+            this.maxPage = Math.max(1, maxPage);
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendResponse(exchange, 405, "Method Not Allowed");
+                return;
+            }
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            String viewer = callerName(params.get("username"));
+            ChangeLog.Page page;
+            try {
+                int limit = Math.min(maxPage, Integer.parseInt(params.getOrDefault("limit", String.valueOf(maxPage))));
+                page = dbManager.getChangesSince(params.get("since"), limit);
+            } catch (IllegalArgumentException e) {
+                // NumberFormatException included
+                sendResponse(exchange, 400, "Invalid since or limit");
+                return;
+            }
+            boolean admin = "admin".equals(viewer);
+
+            // Current state of everything in the page: books from the catalog cache, users in one query
+            // Either failing must not turn the page into deletes: answer 503 and leave the cursor where it was
+            Map<String, org.bson.Document> books;
+            try {
+                books = dbManager.getCatalogCache().getByTitle();
+            } catch (CatalogCache.UnavailableException e) {
+                sendUnavailable(exchange);
+                return;
+            }
+            Set<String> usernames = new HashSet<>();
+            for (ChangeLog.Entry entry : page.getEntries()) {
+                if (ChangeLog.USER.equals(entry.getEntity()) && (admin || entry.getKey().equals(viewer))) {
+                    usernames.add(entry.getKey());
+                }
+            }
+            Map<String, org.bson.Document> users = dbManager.loadUserDocuments(usernames);
+            if (users == null) {
+                // Nothing sent, so the client keeps its cursor and asks again
+                sendUnavailable(exchange);
+                return;
+            }
+
+            List<Map<String, Object>> changes = new ArrayList<>();
+            for (ChangeLog.Entry entry : page.getEntries()) {
+                Map<String, Object> change = new HashMap<>();
+                change.put("version", entry.getVersion());
+                change.put("entity", entry.getEntity());
+                change.put("key", entry.getKey());
+                if (ChangeLog.BOOK.equals(entry.getEntity())) {
+                    org.bson.Document doc = books.get(entry.getKey());
+                    boolean visible = doc != null && isVisibleTo(doc, viewer);
+                    // A hidden book is only news to viewers that could have it; to others its title stays unknown
+                    if (!visible && !admin && !entry.wasVisibleTo(viewer)) continue;
+                    change.put("op", visible ? ChangeLog.UPSERT : ChangeLog.DELETE);
+                    if (visible) change.put("book", toBookInfo(doc));
+                } else {
+                    if (!usernames.contains(entry.getKey())) continue;
+                    org.bson.Document doc = users.get(entry.getKey());
+                    change.put("op", doc != null ? ChangeLog.UPSERT : ChangeLog.DELETE);
+                    if (doc != null) change.put("user", doc);
+                }
+                changes.add(change);
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("cursor", page.getCursor());
+            response.put("resync", page.isResync());
+            response.put("hasMore", page.hasMore());
+            response.put("changes", changes);
+            sendJsonResponse(exchange, response);
+        }
+    }
+
+    /**
+     * Legacy books (no visibility set) are PUBLIC; owners and admin also see PRIVATE books
+     */
+    static boolean isVisibleTo(org.bson.Document doc, String currentUser) {
+        String visibility = doc.getString("visibility");
+        boolean isPublic = visibility == null || "PUBLIC".equalsIgnoreCase(visibility);
+        boolean isOwner = currentUser != null && currentUser.equals(doc.getString("owner"));
+        return isPublic || isOwner || "admin".equals(currentUser);
+    }
+
+    static Map<String, Object> toBookInfo(org.bson.Document doc) {
+        String owner = doc.getString("owner");
+        String visibility = doc.getString("visibility");
+        Map<String, Object> bookInfo = new HashMap<>();
+        bookInfo.put("title", doc.getString("title"));
+        bookInfo.put("copies", doc.getInteger("copies"));
+        bookInfo.put("type", doc.getString("bookType"));
+        bookInfo.put("category", doc.getString("category"));
+        bookInfo.put("visibility", visibility != null ? visibility : "PUBLIC");
+        bookInfo.put("owner", owner != null ? owner : "System");
+        return bookInfo;
+    }
+
+    /**
+     * Parse a raw query string into decoded key/value pairs (first value wins)
+     */
+    static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return params;
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) continue;
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq >= 0 ? pair.substring(0, eq) : pair, StandardCharsets.UTF_8);
+            String value = eq >= 0 ? URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8) : "";
+            params.putIfAbsent(key, value);
+        }
+        return params;
+    }
+
+    /**
+     * Serialize straight into the response body. Compact by default; add "?pretty" to
+     * a request for indented output. Bodies larger than the stream buffer go out chunked,
+     * and bodies past the compression threshold are gzip/deflate encoded if the client accepts it.
+     */
     private static void sendJsonResponse(HttpExchange exchange, Object responseObj) throws IOException {
-        String jsonDetails = gson.toJson(responseObj);
-        exchange.getResponseHeaders().set("Content-Type", "application/json");
-        byte[] bytes = jsonDetails.getBytes(StandardCharsets.UTF_8);
-        exchange.sendResponseHeaders(200, bytes.length);
-        OutputStream os = exchange.getResponseBody();
-        os.write(bytes);
-        os.close();
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        String encoding = null;
+        if (COMPRESSION_ENABLED) {
+            exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+            encoding = negotiateEncoding(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+        }
+        Gson writerGson = wantsPrettyJson(exchange) ? prettyGson : gson;
+        DeferredResponseStream body = new DeferredResponseStream(exchange, 200, JSON_STREAM_BUFFER,
+                encoding, COMPRESSION_LEVEL, COMPRESSION_MIN_BYTES);
+        Writer writer = new OutputStreamWriter(body, StandardCharsets.UTF_8);
+        try {
+            writerGson.toJson(responseObj, writer);
+            writer.flush();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("❌ Error writing JSON response: " + e.getMessage());
+            // Headers already sent: leave the body unterminated and let the server drop the
+            // connection, so the client sees a failed transfer rather than truncated JSON
+            if (body.isStreaming()) throw e;
+            body.discard();
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            sendResponse(exchange, 500, "Failed to write response");
+            return;
+        }
+        // Only a complete body is committed
+        body.close();
+    }
+
+    private static boolean wantsPrettyJson(HttpExchange exchange) {
+        String value = parseQuery(exchange.getRequestURI().getRawQuery()).get("pretty");
+        return value != null && !value.equals("0") && !value.equalsIgnoreCase("false");
+    }
+
+    /**
+     * Pick the response coding: gzip if accepted, else deflate, else null (identity)
+     */
+    static String negotiateEncoding(String acceptEncoding) {
+        if (acceptsEncoding(acceptEncoding, "gzip")) return "gzip";
+        if (acceptsEncoding(acceptEncoding, "deflate")) return "deflate";
+        return null;
+    }
+
+    /**
+     * Whether an Accept-Encoding header allows the given content coding (q > 0)
+     */
+    static boolean acceptsEncoding(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) return false;
+        boolean wildcard = false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] pieces = part.trim().split(";");
+            String name = pieces[0].trim().toLowerCase();
+            double q = 1.0;
+            for (int i = 1; i < pieces.length; i++) {
+                String param = pieces[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (name.equals(coding)) return q > 0;
+            if (name.equals("*")) wildcard = q > 0;
+        }
+        return wildcard;
     }
 
     private static void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
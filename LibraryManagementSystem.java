@@ -273,6 +273,16 @@ class CategoryDecorator extends BookDecorator {
 /* -------------------- LIBRARY EVENT OBSERVER -------------------- */
 interface LibraryObserver {
     void update(String eventType, String message);
+    
+    // Structured event details, when the publisher supplied any; plain observers ignore them
+    default void update(String eventType, String message, Map<String, Object> data) {
+        update(eventType, message);
+    }
+    
+    // Event kinds this observer wants; dispatch only visits subscribers of the event's kind
+    default Set<LibraryEventType> topics() {
+        return EnumSet.allOf(LibraryEventType.class);
+    }
 }
 
 class EmailNotificationObserver implements LibraryObserver {
@@ -289,6 +299,17 @@ class EmailNotificationObserver implements LibraryObserver {
         System.out.println("   Message: " + message);
         System.out.println();
     }
+    
+    // One subscription per address, however many times it is registered
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof EmailNotificationObserver && Objects.equals(email, ((EmailNotificationObserver) other).email);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(email);
+    }
 }
 
 class ConsoleNotificationObserver implements LibraryObserver {
@@ -299,6 +320,17 @@ class ConsoleNotificationObserver implements LibraryObserver {
         System.out.println("   📝 Message: " + message);
         System.out.println();
     }
+    
+    // Stateless: all instances are the same subscriber
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof ConsoleNotificationObserver;
+    }
+    
+    @Override
+    public int hashCode() {
+        return ConsoleNotificationObserver.class.hashCode();
+    }
 }
 
 class FineNotificationObserver implements LibraryObserver {
@@ -310,33 +342,70 @@ class FineNotificationObserver implements LibraryObserver {
             System.out.println();
         }
     }
+    
+    @Override
+    public Set<LibraryEventType> topics() {
+        return EnumSet.of(LibraryEventType.FINE_ALERT);
+    }
+    
+    // Stateless: all instances are the same subscriber
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof FineNotificationObserver;
+    }
+    
+    @Override
+    public int hashCode() {
+        return FineNotificationObserver.class.hashCode();
+    }
 }
 
 class LibraryEventManager {
-    private static LibraryEventManager instance;
-    private List<LibraryObserver> observers = new ArrayList<>();
+    private static volatile LibraryEventManager instance;
+    private final LibraryEventBus eventBus = LibraryEventBus.fromConfig();
     
     private LibraryEventManager() {}
     
     public static LibraryEventManager getInstance() {
         if (instance == null) {
-            instance = new LibraryEventManager();
+            synchronized (LibraryEventManager.class) {
+                if (instance == null) {
+                    instance = new LibraryEventManager();
+                }
+            }
         }
         return instance;
     }
     
     public void addObserver(LibraryObserver observer) {
-        observers.add(observer);
+        eventBus.subscribe(observer);
     }
     
     public void removeObserver(LibraryObserver observer) {
-        observers.remove(observer);
+        eventBus.unsubscribe(observer);
     }
     
+    // Asynchronous: observers are called on the event bus dispatcher threads
+    public void notifyObservers(LibraryEventType eventType, String message) {
+        eventBus.publish(eventType, message);
+    }
+    
+    public void notifyObservers(LibraryEventType eventType, String message, Map<String, Object> data) {
+        eventBus.publish(eventType, message, data);
+    }
+    
+    // Free-form event names (admin notifications) are mapped to a kind by name
     public void notifyObservers(String eventType, String message) {
-        for (LibraryObserver observer : observers) {
-            observer.update(eventType, message);
-        }
+        eventBus.publish(eventType, message);
+    }
+    
+    // Deliver queued events before exit
+    public void shutdown() {
+        eventBus.shutdown(2000);
+    }
+    
+    public LibraryEventBus getEventBus() {
+        return eventBus;
     }
 }
 
@@ -370,7 +439,7 @@ class User {
             this.userFeatures = basicFeatures;
         }
         
-        // Register for notifications
+        // Register for notifications (idempotent: equal observers are subscribed once)
         LibraryEventManager eventManager = LibraryEventManager.getInstance();
         eventManager.addObserver(new ConsoleNotificationObserver());
         if (!username.equals("admin")) {
@@ -416,7 +485,9 @@ public class LibraryManagementSystem {
     static Map<String, Integer> books = new HashMap<>();
     static Map<String, BookType> bookTypes = new HashMap<>();
     static List<String> categories = new ArrayList<>();
-    static Map<String, List<String>> categoryBooks = new HashMap<>();
+    static CategoryIndex categoryIndex = new CategoryIndex();
+    static CatalogSearchIndex searchIndex = new CatalogSearchIndex();
+    static TrigramIndex titleTrigrams = new TrigramIndex();
     static User loggedInUser = null;
     static LibraryEventManager eventManager = LibraryEventManager.getInstance();
     static MongoDBManager dbManager = MongoDBManager.getInstance();
@@ -444,6 +515,7 @@ public class LibraryManagementSystem {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("\n💾 Saving data to database...");
             saveDataToDatabase();
+            eventManager.shutdown();
             dbManager.close();
         }));
         
@@ -472,7 +544,8 @@ public class LibraryManagementSystem {
                 case 8 -> {
                     System.out.println("💾 Saving all data to database...");
                     saveDataToDatabase();
-                    eventManager.notifyObservers("SYSTEM_SHUTDOWN", "Library system is shutting down");
+                    eventManager.notifyObservers(LibraryEventType.SYSTEM_SHUTDOWN, "Library system is shutting down");
+                    eventManager.shutdown();
                     dbManager.close();
                     System.out.println("👋 Thank you for using the system!");
                     System.exit(0);
@@ -519,12 +592,16 @@ public class LibraryManagementSystem {
         }
         
         // Load category books
-        categoryBooks = dbManager.loadCategoryBooks();
+        categoryIndex.load(dbManager.loadCategoryBooks());
         
-        // Initialize empty lists for categories without books
+        // Register categories without books
         for (String category : categories) {
-            categoryBooks.putIfAbsent(category, new ArrayList<>());
+            categoryIndex.addCategory(category);
         }
+        
+        // Rebuild search indexes
+        searchIndex.syncTo(books.keySet());
+        titleTrigrams.rebuild(books.keySet());
     }
     
     private static void saveDataToDatabase() {
@@ -543,14 +620,14 @@ public class LibraryManagementSystem {
             String title = entry.getKey();
             int copies = entry.getValue();
             String bookType = bookTypes.get(title) != null ? bookTypes.get(title).getType() : "Regular";
-            String category = getBookCategory(title);
+            String category = categoryIndex.categoryOf(title);
             if (category.isEmpty()) category = "Uncategorized";
             
             dbManager.saveBook(title, copies, bookType, category);
         }
         
         // Save categories
-        dbManager.saveCategories(categories, categoryBooks);
+        dbManager.saveCategories(categories, categoryIndex.toMap());
         
         System.out.println("✅ Data saved to database successfully!");
     }
@@ -563,9 +640,10 @@ public class LibraryManagementSystem {
         categories.add("Fiction");
         categories.add("History");
         
-        // Initialize category books map
+        // Initialize category index
+        categoryIndex.clear();
         for (String category : categories) {
-            categoryBooks.put(category, new ArrayList<>());
+            categoryIndex.addCategory(category);
         }
         
         // Initialize books with Factory Pattern
@@ -588,17 +666,20 @@ public class LibraryManagementSystem {
         bookTypes.put("Database Management", reference);
         
         // Categorize books
-        categoryBooks.get("Programming").add("Java Programming");
-        categoryBooks.get("Programming").add("Python Basics");
-        categoryBooks.get("Programming").add("Data Structures");
-        categoryBooks.get("Science").add("Operating Systems");
-        categoryBooks.get("Science").add("Database Management");
+        categoryIndex.assign("Java Programming", "Programming");
+        categoryIndex.assign("Python Basics", "Programming");
+        categoryIndex.assign("Data Structures", "Programming");
+        categoryIndex.assign("Operating Systems", "Science");
+        categoryIndex.assign("Database Management", "Science");
         
         // Create default users with Factory Pattern
         users.put("admin", new User("admin", "admin123", "authorized"));
         users.put("user1", new User("user1", "pass123", "authorized"));
         users.put("guest", new User("guest", "guest123", "unauthorized"));
         
+        searchIndex.syncTo(books.keySet());
+        titleTrigrams.rebuild(books.keySet());
+        
         // Save to database
         saveDataToDatabase();
     }
@@ -635,7 +716,7 @@ public class LibraryManagementSystem {
                         users.clear();
                         books.clear();
                         bookTypes.clear();
-                        categoryBooks.clear();
+                        categoryIndex.clear();
                         initializeDefaultData();
                         System.out.println("✅ Database cleared and reinitialized!");
                     }
@@ -668,7 +749,7 @@ public class LibraryManagementSystem {
         User admin = users.get(u);
         if (u.equals("admin") && admin != null && admin.password.equals(p)) {
             loggedInUser = admin;
-            eventManager.notifyObservers("ADMIN_LOGIN", "Admin logged in successfully");
+            eventManager.notifyObservers(LibraryEventType.ADMIN_LOGIN, "Admin logged in successfully");
             System.out.println("✅ Login successful! Welcome Admin!");
             
             while (true) {
@@ -695,7 +776,7 @@ public class LibraryManagementSystem {
                     case 7 -> viewUserFines();
                     case 8 -> sendNotification();
                     case 9 -> {
-                        eventManager.notifyObservers("ADMIN_LOGOUT", "Admin logged out");
+                        eventManager.notifyObservers(LibraryEventType.ADMIN_LOGOUT, "Admin logged out");
                         loggedInUser = null;
                         System.out.println("👋 Logging out...");
                         return;
@@ -731,7 +812,7 @@ public class LibraryManagementSystem {
         // Save to database
         dbManager.saveUser(newUser);
         
-        eventManager.notifyObservers("USER_REGISTERED", 
+        eventManager.notifyObservers(LibraryEventType.USER_REGISTERED, 
             "New " + userType + " user registered: " + username);
         System.out.println("✅ User added successfully with " + userType + " privileges!");
     }
@@ -787,12 +868,14 @@ public class LibraryManagementSystem {
         String fullTitle = title + " by " + author;
         books.put(fullTitle, copies);
         bookTypes.put(fullTitle, bookType);
-        categoryBooks.get(category).add(fullTitle);
+        categoryIndex.assign(fullTitle, category);
+        searchIndex.add(fullTitle);
+        titleTrigrams.add(fullTitle);
         
         // Save to database
         dbManager.saveBook(fullTitle, copies, bookType.getType(), category);
         
-        eventManager.notifyObservers("NEW_BOOK_ADDED", 
+        eventManager.notifyObservers(LibraryEventType.NEW_BOOK_ADDED, 
             "New " + bookType.getType() + " book added: " + title);
         System.out.println("✅ New " + bookType.getType() + " book added successfully!");
     }
@@ -816,7 +899,7 @@ public class LibraryManagementSystem {
             return;
         }
         if (users.remove(username) != null) {
-            eventManager.notifyObservers("USER_REMOVED", "User removed: " + username);
+            eventManager.notifyObservers(LibraryEventType.USER_REMOVED, "User removed: " + username);
             System.out.println("✅ User removed successfully!");
         } else {
             System.out.println("❌ User not found!");
@@ -856,17 +939,16 @@ public class LibraryManagementSystem {
             String bookToRemove = bookList.get(choice - 1);
             books.remove(bookToRemove);
             bookTypes.remove(bookToRemove);
-            
-            for (List<String> catBooks : categoryBooks.values()) {
-                catBooks.removeIf(b -> b.equals(bookToRemove));
-            }
+            searchIndex.remove(bookToRemove);
+            titleTrigrams.remove(bookToRemove);
+            categoryIndex.remove(bookToRemove);
             
             for (User user : users.values()) {
                 user.favourites.remove(bookToRemove);
                 user.borrowedBooks.remove(bookToRemove);
             }
             
-            eventManager.notifyObservers("BOOK_REMOVED", "Book removed: " + bookToRemove);
+            eventManager.notifyObservers(LibraryEventType.BOOK_REMOVED, "Book removed: " + bookToRemove);
             System.out.println("✅ Book removed successfully!");
         } else {
             System.out.println("❌ Invalid book number!");
@@ -912,7 +994,7 @@ public class LibraryManagementSystem {
         // Save to database
         dbManager.saveUser(users.get(username));
         
-        eventManager.notifyObservers("USER_REGISTERED", 
+        eventManager.notifyObservers(LibraryEventType.USER_REGISTERED, 
             "New user registered: " + username + " (" + userType + ")");
         System.out.println("✅ Registration successful! You can now login.");
     }
@@ -928,7 +1010,7 @@ public class LibraryManagementSystem {
 
         if (user != null && user.password.equals(password)) {
             loggedInUser = user;
-            eventManager.notifyObservers("USER_LOGIN", "User logged in: " + username);
+            eventManager.notifyObservers(LibraryEventType.USER_LOGIN, "User logged in: " + username);
             System.out.println("✅ Login successful! Welcome " + username + "!");
             userMenu();
         } else {
@@ -967,7 +1049,7 @@ public class LibraryManagementSystem {
                 case 9 -> checkFineDetails();
                 case 10 -> loggedInUser.displayUserInfo();
                 case 11 -> {
-                    eventManager.notifyObservers("USER_LOGOUT", "User logged out: " + loggedInUser.username);
+                    eventManager.notifyObservers(LibraryEventType.USER_LOGOUT, "User logged out: " + loggedInUser.username);
                     loggedInUser = null;
                     System.out.println("👋 Logged out successfully!");
                     return;
@@ -1002,7 +1084,7 @@ public class LibraryManagementSystem {
             BookDisplay decoratedBook = new AvailableStatusDecorator(basicBook, isAvailable);
             
             // Add category decorator if available
-            String category = getBookCategory(book);
+            String category = categoryIndex.categoryOf(book);
             if (!category.isEmpty()) {
                 decoratedBook = new CategoryDecorator(decoratedBook, category);
             }
@@ -1013,15 +1095,6 @@ public class LibraryManagementSystem {
         }
     }
     
-    static String getBookCategory(String bookName) {
-        for (Map.Entry<String, List<String>> entry : categoryBooks.entrySet()) {
-            if (entry.getValue().contains(bookName)) {
-                return entry.getKey();
-            }
-        }
-        return "";
-    }
-
     static void browseByCategory() {
         System.out.println("\n📂 === BROWSE BY CATEGORY ===");
         for (int i = 0; i < categories.size(); i++) {
@@ -1033,7 +1106,7 @@ public class LibraryManagementSystem {
         
         if (choice >= 1 && choice <= categories.size()) {
             String category = categories.get(choice - 1);
-            List<String> catBooks = categoryBooks.get(category);
+            List<String> catBooks = categoryIndex.booksIn(category);
             
             System.out.println("\n📚 Books in " + category + ":");
             if (catBooks.isEmpty()) {
@@ -1065,15 +1138,25 @@ public class LibraryManagementSystem {
         String term = sc.nextLine().toLowerCase();
         
         System.out.println("\n🔎 Search Results:");
-        List<String> results = new ArrayList<>();
-        List<String> bookList = new ArrayList<>(books.keySet());
+        // Ranked word matches from the inverted index first
+        List<String> results = new ArrayList<>(searchIndex.search(term, books.size()));
         
-        for (String book : bookList) {
-            if (book.toLowerCase().contains(term)) {
+        // Then any remaining fragment matches ("gram" -> "Programming"), via the trigram index
+        Set<String> ranked = new HashSet<>(results);
+        for (String book : titleTrigrams.search(term)) {
+            if (!ranked.contains(book)) {
                 results.add(book);
             }
         }
         
+        if (results.isEmpty()) {
+            // Nothing matched as typed; retry tolerating typos
+            results = searchIndex.fuzzySearch(term, CatalogSearchIndex.MAX_FUZZY_DISTANCE, 10);
+            if (!results.isEmpty()) {
+                System.out.println("🤔 No exact matches. Did you mean:");
+            }
+        }
+        
         if (results.isEmpty()) {
             System.out.println("📭 No books found!");
         } else {
@@ -1142,8 +1225,16 @@ public class LibraryManagementSystem {
             // Get book type using Factory Pattern
             BookType bookType = bookTypes.get(bookName);
             
+            // Reserve a copy atomically in the database (falls back to local count when offline)
+            MongoDBManager.InventoryResult reservation = dbManager.reserveCopy(bookName);
+            if (reservation.getStatus() == MongoDBManager.InventoryResult.Status.SOLD_OUT) {
+                books.put(bookName, 0);
+                System.out.println("❌ Sorry, the last copy was just borrowed by someone else!");
+                return;
+            }
+            
             // Borrow the book
-            books.put(bookName, books.get(bookName) - 1);
+            books.put(bookName, reservation.isSuccess() ? reservation.getCopies() : books.get(bookName) - 1);
             loggedInUser.borrowedBooks.add(bookName);
             loggedInUser.bookTypes.put(bookName, bookType);
             
@@ -1153,12 +1244,11 @@ public class LibraryManagementSystem {
             loggedInUser.borrowDates.put(bookName, today.toString());
             loggedInUser.dueDates.put(bookName, dueDate.toString());
             
-            eventManager.notifyObservers("BOOK_BORROWED", 
+            eventManager.notifyObservers(LibraryEventType.BOOK_BORROWED, 
                 loggedInUser.username + " borrowed: " + bookName + " (Due: " + dueDate + ")");
             
             // Save to database
-            dbManager.saveUser(loggedInUser);
-            dbManager.updateBookCopies(bookName, books.get(bookName));
+            dbManager.recordLoan(loggedInUser, bookName);
             dbManager.saveTransaction(loggedInUser.username, bookName, "BORROW", today.toString());
             
             System.out.println("✅ Book borrowed successfully!");
@@ -1192,7 +1282,8 @@ public class LibraryManagementSystem {
             String bookName = loggedInUser.borrowedBooks.remove(choice - 1);
             
             // Return book to library
-            books.put(bookName, books.get(bookName) + 1);
+            MongoDBManager.InventoryResult release = dbManager.releaseCopy(bookName);
+            books.put(bookName, release.isSuccess() ? release.getCopies() : books.get(bookName) + 1);
             
             // Calculate fine if overdue
             String dueDateStr = loggedInUser.dueDates.get(bookName);
@@ -1207,7 +1298,7 @@ public class LibraryManagementSystem {
                 fine = daysLate * dailyRate;
                 loggedInUser.totalFine += fine;
                 
-                eventManager.notifyObservers("LATE_RETURN", 
+                eventManager.notifyObservers(LibraryEventType.LATE_RETURN, 
                     loggedInUser.username + " returned " + bookName + " late by " + 
                     daysLate + " days. Fine: Rs." + fine);
                 
@@ -1221,12 +1312,11 @@ public class LibraryManagementSystem {
             loggedInUser.dueDates.remove(bookName);
             loggedInUser.bookTypes.remove(bookName);
             
-            eventManager.notifyObservers("BOOK_RETURNED", 
+            eventManager.notifyObservers(LibraryEventType.BOOK_RETURNED, 
                 loggedInUser.username + " returned: " + bookName);
             
             // Save to database
-            dbManager.saveUser(loggedInUser);
-            dbManager.updateBookCopies(bookName, books.get(bookName));
+            dbManager.recordReturn(loggedInUser, bookName, fine);
             dbManager.saveTransaction(loggedInUser.username, bookName, "RETURN", returnDate.toString());
             
             System.out.println("✅ Book returned successfully!");
@@ -1258,7 +1348,8 @@ public class LibraryManagementSystem {
             String bookName = bookList.get(choice - 1);
             if (!loggedInUser.favourites.contains(bookName)) {
                 loggedInUser.favourites.add(bookName);
-                eventManager.notifyObservers("BOOK_FAVORITED", 
+                dbManager.addFavorite(loggedInUser.username, bookName);
+                eventManager.notifyObservers(LibraryEventType.BOOK_FAVORITED, 
                     loggedInUser.username + " favorited: " + bookName);
                 System.out.println("✅ Added to favourites: " + bookName);
             } else {
@@ -0,0 +1,151 @@
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Library Stats - running totals kept in a single document.
+ * Writers apply $inc deltas as they change users and books, so reading the
+ * dashboard numbers is one lookup by _id. A periodic reconciliation recomputes
+ * everything from the source collections, correcting any drift and refreshing
+ * the overdue count, which changes with the calendar rather than with writes.
+ */
+public class LibraryStats {
+    public static final String TOTAL_USERS = "totalUsers";
+    public static final String TOTAL_BOOKS = "totalBooks";
+    public static final String TOTAL_COPIES = "totalCopies";
+    public static final String ACTIVE_BORROWS = "activeBorrows";
+    public static final String OVERDUE_LOANS = "overdueLoans";
+    public static final String OUTSTANDING_FINES = "outstandingFines";
+
+    private static final List<String> FIELDS = Arrays.asList(
+        TOTAL_USERS, TOTAL_BOOKS, TOTAL_COPIES, ACTIVE_BORROWS, OVERDUE_LOANS, OUTSTANDING_FINES
+    );
+    private static final String STATS_ID = "library";
+
+    private final MongoCollection<Document> stats;
+    private final MongoCollection<Document> users;
+    private final MongoCollection<Document> books;
+    private ScheduledExecutorService scheduler;
+
+    public LibraryStats(MongoCollection<Document> stats, MongoCollection<Document> users, MongoCollection<Document> books) {
+        this.stats = stats;
+        this.users = users;
+        this.books = books;
+    }
+
+    /**
+     * Atomically add deltas ({field: amount}) to the running totals; zero deltas are skipped
+     */
+    public void increment(Map<String, ? extends Number> deltas) {
+        List<Bson> updates = new ArrayList<>();
+        for (Map.Entry<String, ? extends Number> delta : deltas.entrySet()) {
+            if (delta.getValue().doubleValue() != 0) {
+                updates.add(Updates.inc(delta.getKey(), delta.getValue()));
+            }
+        }
+        if (updates.isEmpty()) return;
+        updates.add(Updates.set("lastUpdated", LocalDateTime.now().toString()));
+        stats.updateOne(Filters.eq("_id", STATS_ID), Updates.combine(updates), new UpdateOptions().upsert(true));
+    }
+
+    /**
+     * Current totals; computed once from scratch if the document doesn't exist yet
+     */
+    public Document read() {
+        Document doc = stats.find(Filters.eq("_id", STATS_ID)).first();
+        return doc != null ? doc : reconcile();
+    }
+
+    /**
+     * Recompute every total from the users and books collections and store the result.
+     * Deltas applied while this runs may be overwritten; the next run picks them up again.
+     */
+    public Document reconcile() {
+        String today = LocalDate.now().toString(); // due dates are ISO dates, so they compare as strings
+
+        Document userTotals = users.aggregate(Arrays.asList(
+            new Document("$group", new Document("_id", null)
+                .append("users", new Document("$sum", 1))
+                .append("borrows", new Document("$sum",
+                    new Document("$size", new Document("$ifNull", Arrays.asList("$borrowedBooks", new ArrayList<>())))))
+                .append("overdue", new Document("$sum",
+                    new Document("$size", new Document("$filter", new Document("input",
+                        new Document("$objectToArray", new Document("$ifNull", Arrays.asList("$dueDates", new Document()))))
+                        .append("cond", new Document("$lt", Arrays.asList("$$this.v", today)))))))
+                .append("fines", new Document("$sum", new Document("$ifNull", Arrays.asList("$totalFine", 0)))))
+        )).first();
+
+        Document bookTotals = books.aggregate(Arrays.asList(
+            new Document("$group", new Document("_id", null)
+                .append("books", new Document("$sum", 1))
+                .append("copies", new Document("$sum", new Document("$ifNull", Arrays.asList("$copies", 0)))))
+        )).first();
+
+        Document totals = new Document("_id", STATS_ID)
+            .append(TOTAL_USERS, number(userTotals, "users").longValue())
+            .append(TOTAL_BOOKS, number(bookTotals, "books").longValue())
+            .append(TOTAL_COPIES, number(bookTotals, "copies").longValue())
+            .append(ACTIVE_BORROWS, number(userTotals, "borrows").longValue())
+            .append(OVERDUE_LOANS, number(userTotals, "overdue").longValue())
+            .append(OUTSTANDING_FINES, number(userTotals, "fines").doubleValue())
+            .append("lastReconciled", LocalDateTime.now().toString());
+        stats.replaceOne(Filters.eq("_id", STATS_ID), totals, new ReplaceOptions().upsert(true));
+        return totals;
+    }
+
+    /**
+     * Zero every total (after the collections were emptied)
+     */
+    public void reset() {
+        Document zeros = new Document("_id", STATS_ID);
+        for (String field : FIELDS) {
+            zeros.append(field, field.equals(OUTSTANDING_FINES) ? (Object) 0.0 : (Object) 0L);
+        }
+        zeros.append("lastReconciled", LocalDateTime.now().toString());
+        stats.replaceOne(Filters.eq("_id", STATS_ID), zeros, new ReplaceOptions().upsert(true));
+    }
+
+    private static Number number(Document doc, String field) {
+        Object value = doc != null ? doc.get(field) : null;
+        return value instanceof Number ? (Number) value : 0;
+    }
+
+    // ==================== RECONCILIATION JOB ====================
+
+    public synchronized void startReconciliation(long intervalMillis) {
+        if (scheduler != null || intervalMillis <= 0) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "library-stats-reconciler");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                reconcile();
+            } catch (Exception e) {
+                System.err.println("❌ Stats reconciliation failed: " + e.getMessage());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
@@ -1,13 +1,29 @@
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
 import com.mongodb.client.*;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.FindOneAndDeleteOptions;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOptions;
 import com.mongodb.client.model.Updates;
+import com.mongodb.client.result.UpdateResult;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 
+import com.google.gson.Gson;
+
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * MongoDB Database Manager - Singleton Pattern
@@ -18,17 +34,36 @@ public class MongoDBManager {
     private MongoClient mongoClient;
     private MongoDatabase database;
     private Properties config;
+    private ConnectionHealthMonitor healthMonitor;
+    
+    // Bumped on every catalog write; the catalog cache reloads when it changes
+    private final AtomicLong catalogVersion = new AtomicLong();
+    private CatalogCache catalogCache;
+    private final CatalogSearchIndex searchIndex = new CatalogSearchIndex();
+    // Fragment ("contains") matches for searches the word index can't answer
+    private final TrigramIndex titleTrigrams = new TrigramIndex();
+    private TransactionLogWriter transactionLog;
+    private LibraryStats stats;
+    private ChangeLog changeLog;
+    private volatile Consumer<String> userWriteListener;
     
     // Collection names
     private String usersCollection;
     private String booksCollection;
     private String transactionsCollection;
     private String categoriesCollection;
+    private String statsCollection;
     
     // Private constructor for Singleton
     private MongoDBManager() {
         loadConfiguration();
         connectToDatabase();
+        long cacheMaxAge = Long.parseLong(config.getProperty("catalog.cache.maxAge.ms", "30000"));
+        catalogCache = new CatalogCache(catalogVersion::get, this::fetchCatalog, cacheMaxAge);
+        catalogCache.setReloadListener(this::syncSearchIndex);
+        startTransactionLog();
+        startStats();
+        changeLog = new ChangeLog(Integer.parseInt(config.getProperty("changes.log.maxEntries", "10000")));
     }
     
     /**
@@ -56,12 +91,14 @@ public class MongoDBManager {
             booksCollection = config.getProperty("mongodb.collection.books", "books");
             transactionsCollection = config.getProperty("mongodb.collection.transactions", "transactions");
             categoriesCollection = config.getProperty("mongodb.collection.categories", "categories");
+            statsCollection = config.getProperty("mongodb.collection.stats", "stats");
         } catch (IOException e) {
             System.err.println("⚠️  Warning: Could not load config.properties. Using default values.");
             usersCollection = "users";
             booksCollection = "books";
             transactionsCollection = "transactions";
             categoriesCollection = "categories";
+            statsCollection = "stats";
         }
     }
     
@@ -72,12 +109,34 @@ public class MongoDBManager {
         try {
             String connectionString = config.getProperty("mongodb.connection.string", "mongodb://localhost:27017");
             String databaseName = config.getProperty("mongodb.database.name", "library_management_db");
+            long heartbeatMillis = Long.parseLong(config.getProperty("mongodb.health.heartbeat.ms", "5000"));
+            long stalenessMillis = Long.parseLong(config.getProperty("mongodb.health.staleness.ms", "15000"));
+            int failureThreshold = Integer.parseInt(config.getProperty("mongodb.health.failure.threshold", "3"));
+            boolean allowDegraded = Boolean.parseBoolean(config.getProperty("mongodb.health.degraded.allow", "true"));
+            
+            healthMonitor = new ConnectionHealthMonitor(stalenessMillis, failureThreshold, allowDegraded, this::ping);
             
-            mongoClient = MongoClients.create(connectionString);
+            MongoClientSettings settings = MongoClientSettings.builder()
+                    .applyConnectionString(new ConnectionString(connectionString))
+                    .applyToServerSettings(builder -> builder
+                            .heartbeatFrequency(heartbeatMillis, TimeUnit.MILLISECONDS)
+                            .addServerMonitorListener(healthMonitor))
+                    .build();
+            
+            mongoClient = MongoClients.create(settings);
             database = mongoClient.getDatabase(databaseName);
             
+            // Seed the health state with one real round trip
+            if (!healthMonitor.isUsable()) {
+                System.err.println("⚠️  MongoDB did not answer the initial ping. Will keep monitoring.");
+            }
+            
             System.out.println("✅ Successfully connected to MongoDB!");
             System.out.println("📊 Database: " + databaseName);
+            
+            if (Boolean.parseBoolean(config.getProperty("mongodb.indexes.bootstrap", "true")) && isConnected()) {
+                ensureIndexes();
+            }
         } catch (Exception e) {
             System.err.println("❌ Error connecting to MongoDB: " + e.getMessage());
             System.err.println("⚠️  Running in offline mode. Data will not be persisted.");
@@ -85,24 +144,122 @@ public class MongoDBManager {
     }
     
     /**
-     * Check if database is connected
+     * Check if database is connected.
+     * Served from cached heartbeat state; only probes the server when that state is stale.
      */
     public boolean isConnected() {
+        if (mongoClient == null || database == null || healthMonitor == null) return false;
+        return healthMonitor.isUsable();
+    }
+    
+    /**
+     * Get the current connection health state
+     */
+    public ConnectionHealthMonitor.State getConnectionHealth() {
+        return healthMonitor != null ? healthMonitor.getState() : ConnectionHealthMonitor.State.DOWN;
+    }
+    
+    /**
+     * Single round trip used by the health monitor when its cached state is stale
+     */
+    private boolean ping() {
         try {
-            if (mongoClient != null && database != null) {
-                database.listCollectionNames().first();
-                return true;
-            }
+            if (database == null) return false;
+            database.runCommand(new Document("ping", 1));
+            return true;
         } catch (Exception e) {
             return false;
         }
-        return false;
+    }
+    
+    // ==================== INDEX BOOTSTRAP ====================
+    
+    /**
+     * Expected index definition
+     */
+    private static class IndexSpec {
+        final String collection;
+        final String name;
+        final Document keys;
+        final boolean unique;
+        
+        IndexSpec(String collection, String name, Document keys, boolean unique) {
+            this.collection = collection;
+            this.name = name;
+            this.keys = keys;
+            this.unique = unique;
+        }
+    }
+    
+    /**
+     * Create missing indexes and report any whose definition differs from what queries expect
+     */
+    private void ensureIndexes() {
+        List<IndexSpec> expected = List.of(
+            new IndexSpec(usersCollection, "username_unique", new Document("username", 1), true),
+            new IndexSpec(booksCollection, "title_unique", new Document("title", 1), true),
+            new IndexSpec(booksCollection, "category_title", new Document("category", 1).append("title", 1), false),
+            new IndexSpec(booksCollection, "copies_title", new Document("copies", 1).append("title", 1), false),
+            new IndexSpec(transactionsCollection, "username_timestamp", new Document("username", 1).append("timestamp", 1), false),
+            new IndexSpec(categoriesCollection, "name", new Document("name", 1), false)
+        );
+        
+        Map<String, List<Document>> existingByCollection = new HashMap<>();
+        int created = 0;
+        
+        for (IndexSpec spec : expected) {
+            try {
+                MongoCollection<Document> collection = database.getCollection(spec.collection);
+                List<Document> existing = existingByCollection.computeIfAbsent(spec.collection,
+                        c -> collection.listIndexes().into(new ArrayList<>()));
+                
+                Document match = null;
+                for (Document index : existing) {
+                    if (spec.name.equals(index.getString("name")) || sameKeys(spec.keys, (Document) index.get("key"))) {
+                        match = index;
+                        break;
+                    }
+                }
+                
+                if (match == null) {
+                    System.out.println("⚠️  Missing index " + spec.collection + "." + spec.name + ", creating it...");
+                    collection.createIndex(spec.keys, new IndexOptions().name(spec.name).unique(spec.unique));
+                    created++;
+                } else if (!sameKeys(spec.keys, (Document) match.get("key"))
+                        || spec.unique != match.getBoolean("unique", false)) {
+                    System.err.println("⚠️  Index " + spec.collection + "." + match.getString("name")
+                            + " differs from expected definition " + spec.keys.toJson()
+                            + (spec.unique ? " (unique)" : "") + ". Leaving it unchanged.");
+                }
+            } catch (Exception e) {
+                System.err.println("❌ Error ensuring index " + spec.collection + "." + spec.name + ": " + e.getMessage());
+            }
+        }
+        
+        System.out.println("✅ Indexes verified" + (created > 0 ? " (" + created + " created)" : ""));
+    }
+    
+    /**
+     * Compare index key documents by field order and direction
+     */
+    private static boolean sameKeys(Document expected, Document actual) {
+        if (actual == null || expected.size() != actual.size()) return false;
+        Iterator<Map.Entry<String, Object>> a = expected.entrySet().iterator();
+        Iterator<Map.Entry<String, Object>> b = actual.entrySet().iterator();
+        while (a.hasNext()) {
+            Map.Entry<String, Object> e = a.next();
+            Map.Entry<String, Object> f = b.next();
+            if (!e.getKey().equals(f.getKey())) return false;
+            if (!(f.getValue() instanceof Number)
+                    || ((Number) e.getValue()).intValue() != ((Number) f.getValue()).intValue()) return false;
+        }
+        return true;
     }
     
     // ==================== USER OPERATIONS ====================
     
     /**
-     * Save user to database
+     * Save user to database (single-round-trip upsert)
      */
     public boolean saveUser(User user) {
         if (!isConnected()) return false;
@@ -110,27 +267,28 @@ public class MongoDBManager {
         try {
             MongoCollection<Document> collection = database.getCollection(usersCollection);
             
-            Document userDoc = new Document("username", user.username)
-                    .append("password", user.password)
-                    .append("userType", user.userType.getType())
-                    .append("favourites", user.favourites)
-                    .append("borrowedBooks", user.borrowedBooks)
-                    .append("borrowDates", user.borrowDates)
-                    .append("dueDates", user.dueDates)
-                    .append("totalFine", user.totalFine)
-                    .append("createdAt", LocalDateTime.now().toString())
-                    .append("lastModified", LocalDateTime.now().toString());
-            
-            // Check if user exists
-            Document existing = collection.find(Filters.eq("username", user.username)).first();
-            if (existing != null) {
-                // Update existing user
-                collection.replaceOne(Filters.eq("username", user.username), userDoc);
-            } else {
-                // Insert new user
-                collection.insertOne(userDoc);
-            }
+            Bson update = Updates.combine(
+                Updates.set("password", user.password),
+                Updates.set("userType", user.userType.getType()),
+                Updates.set("favourites", user.favourites),
+                Updates.set("borrowedBooks", user.borrowedBooks),
+                Updates.set("borrowDates", user.borrowDates),
+                Updates.set("dueDates", user.dueDates),
+                Updates.set("totalFine", user.totalFine),
+                Updates.set("lastModified", LocalDateTime.now().toString()),
+                Updates.setOnInsert("createdAt", LocalDateTime.now().toString())
+            );
+            // The before-image (null for a new user) gives the stats deltas
+            Document before = collection.findOneAndUpdate(Filters.eq("username", user.username), update,
+                    new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.BEFORE)
+                            .projection(Projections.include("borrowedBooks", "totalFine")));
             
+            Map<String, Number> deltas = new HashMap<>();
+            deltas.put(LibraryStats.TOTAL_USERS, before == null ? 1 : 0);
+            deltas.put(LibraryStats.ACTIVE_BORROWS, user.borrowedBooks.size() - loanCount(before));
+            deltas.put(LibraryStats.OUTSTANDING_FINES, user.totalFine - fineOf(before));
+            updateStats(deltas);
+            userWritten(user.username, ChangeLog.UPSERT);
             return true;
         } catch (Exception e) {
             System.err.println("❌ Error saving user: " + e.getMessage());
@@ -138,22 +296,143 @@ public class MongoDBManager {
         }
     }
 
+    // ==================== PARTIAL USER UPDATES ====================
+    
     /**
-     * Toggle favorite status for a book
+     * Add a book to a user's favourites ($addToSet)
      */
-    public boolean toggleFavorite(String username, String bookTitle) {
-        User user = loadUser(username);
-        if (user == null) return false;
+    public boolean addFavorite(String username, String bookTitle) {
+        return updateUserFields(username, Updates.addToSet("favourites", bookTitle), "adding favourite") != null;
+    }
+    
+    /**
+     * Remove a book from a user's favourites ($pull)
+     */
+    public boolean removeFavorite(String username, String bookTitle) {
+        return updateUserFields(username, Updates.pull("favourites", bookTitle), "removing favourite") != null;
+    }
 
-        boolean added;
-        if (user.favourites.contains(bookTitle)) {
-            user.favourites.remove(bookTitle);
-            added = false;
+    /**
+     * Toggle favorite status for a book.
+     * Tries $addToSet first; if the title was already there, $pull removes it.
+     */
+    public boolean toggleFavorite(String username, String bookTitle) {
+        UpdateResult added = updateUserFields(username, Updates.addToSet("favourites", bookTitle), "toggling favourite");
+        if (added == null || added.getMatchedCount() == 0) return false;
+        if (added.getModifiedCount() > 0) return true;
+        return removeFavorite(username, bookTitle);
+    }
+    
+    /**
+     * Record a new loan: touches only borrowedBooks and the dates for this title
+     */
+    public boolean recordLoan(User user, String bookTitle) {
+        if (!isSafeFieldKey(bookTitle)) return saveUser(user);
+        
+        Bson update = Updates.combine(
+            Updates.addToSet("borrowedBooks", bookTitle),
+            Updates.set("borrowDates." + bookTitle, user.borrowDates.get(bookTitle)),
+            Updates.set("dueDates." + bookTitle, user.dueDates.get(bookTitle))
+        );
+        // Matching only when the title isn't on loan yet tells a new loan from a date refresh
+        UpdateResult result = updateUserFields(user.username,
+                Filters.and(Filters.eq("username", user.username), Filters.ne("borrowedBooks", bookTitle)),
+                update, "recording loan");
+        if (result != null && result.getMatchedCount() > 0) {
+            updateStats(Map.of(LibraryStats.ACTIVE_BORROWS, 1));
+            return true;
+        }
+        result = updateUserFields(user.username, update, "recording loan");
+        return result != null && result.getMatchedCount() > 0;
+    }
+    
+    /**
+     * Record a return: pulls the loan, clears its dates and adds any fine ($inc)
+     */
+    public boolean recordReturn(User user, String bookTitle, double fine) {
+        if (!isSafeFieldKey(bookTitle)) return saveUser(user);
+        
+        List<Bson> updates = new ArrayList<>();
+        updates.add(Updates.pull("borrowedBooks", bookTitle));
+        updates.add(Updates.unset("borrowDates." + bookTitle));
+        updates.add(Updates.unset("dueDates." + bookTitle));
+        if (fine > 0) {
+            updates.add(Updates.inc("totalFine", fine));
+        }
+        Bson update = Updates.combine(updates);
+        
+        Map<String, Number> deltas = new HashMap<>();
+        deltas.put(LibraryStats.OUTSTANDING_FINES, Math.max(0, fine));
+        UpdateResult result = updateUserFields(user.username,
+                Filters.and(Filters.eq("username", user.username), Filters.eq("borrowedBooks", bookTitle)),
+                update, "recording return");
+        if (result != null && result.getMatchedCount() > 0) {
+            deltas.put(LibraryStats.ACTIVE_BORROWS, -1);
         } else {
-            user.favourites.add(bookTitle);
-            added = true;
+            // Not on loan (already returned): still clear stale dates and apply the fine
+            result = updateUserFields(user.username, update, "recording return");
+        }
+        if (result == null || result.getMatchedCount() == 0) return false;
+        updateStats(deltas);
+        return true;
+    }
+    
+    /**
+     * Add to a user's outstanding fine ($inc)
+     */
+    public boolean addFine(String username, double amount) {
+        UpdateResult result = updateUserFields(username, Updates.inc("totalFine", amount), "adding fine");
+        if (result == null) return false;
+        if (result.getMatchedCount() > 0) {
+            updateStats(Map.of(LibraryStats.OUTSTANDING_FINES, amount));
+        }
+        return true;
+    }
+    
+    /**
+     * Apply a targeted update to one user document and bump lastModified
+     */
+    private UpdateResult updateUserFields(String username, Bson update, String action) {
+        return updateUserFields(username, Filters.eq("username", username), update, action);
+    }
+    
+    // The filter must select the named user (possibly with extra conditions)
+    private UpdateResult updateUserFields(String username, Bson filter, Bson update, String action) {
+        if (!isConnected()) return null;
+        
+        try {
+            MongoCollection<Document> collection = database.getCollection(usersCollection);
+            UpdateResult result = collection.updateOne(filter,
+                    Updates.combine(update, Updates.set("lastModified", LocalDateTime.now().toString())));
+            if (result.getMatchedCount() > 0) {
+                userWritten(username, ChangeLog.UPSERT);
+            }
+            return result;
+        } catch (Exception e) {
+            System.err.println("❌ Error " + action + ": " + e.getMessage());
+            return null;
         }
-        return saveUser(user);
+    }
+    
+    /**
+     * Called with the username after every user write (null when all users were removed),
+     * e.g. to drop cached copies of that user
+     */
+    public void setUserWriteListener(Consumer<String> listener) {
+        this.userWriteListener = listener;
+    }
+    
+    private void userWritten(String username, String op) {
+        changeLog.record(ChangeLog.USER, username, op);
+        Consumer<String> listener = userWriteListener;
+        if (listener != null) listener.accept(username);
+    }
+    
+    /**
+     * Book titles are used as map keys; dots or a leading $ would be read as a field path
+     */
+    private static boolean isSafeFieldKey(String key) {
+        return key != null && !key.isEmpty() && !key.contains(".") && !key.startsWith("$");
     }
     
     /**
@@ -167,19 +446,7 @@ public class MongoDBManager {
             Document userDoc = collection.find(Filters.eq("username", username)).first();
             
             if (userDoc != null) {
-                String password = userDoc.getString("password");
-                String userType = userDoc.getString("userType");
-                
-                User user = new User(username, password, userType);
-                
-                // Load user data
-                user.favourites = userDoc.get("favourites") != null ? (List<String>) userDoc.get("favourites") : new ArrayList<>();
-                user.borrowedBooks = userDoc.get("borrowedBooks") != null ? (List<String>) userDoc.get("borrowedBooks") : new ArrayList<>();
-                user.borrowDates = userDoc.get("borrowDates") != null ? (Map<String, String>) userDoc.get("borrowDates") : new HashMap<>();
-                user.dueDates = userDoc.get("dueDates") != null ? (Map<String, String>) userDoc.get("dueDates") : new HashMap<>();
-                user.totalFine = userDoc.getDouble("totalFine") != null ? userDoc.getDouble("totalFine") : 0.0;
-                
-                return user;
+                return documentToUser(userDoc);
             }
         } catch (Exception e) {
             System.err.println("❌ Error loading user: " + e.getMessage());
@@ -188,22 +455,62 @@ public class MongoDBManager {
         return null;
     }
     
+    /**
+     * Map a user document to a User object.
+     * Fields left out by a projection fall back to empty defaults.
+     */
+    @SuppressWarnings("unchecked")
+    private User documentToUser(Document userDoc) {
+        String username = userDoc.getString("username");
+        String password = userDoc.getString("password");
+        String userType = userDoc.getString("userType");
+        
+        User user = new User(username, password, userType != null ? userType : "unauthorized");
+        
+        // Load user data
+        user.favourites = userDoc.get("favourites") != null ? (List<String>) userDoc.get("favourites") : new ArrayList<>();
+        user.borrowedBooks = userDoc.get("borrowedBooks") != null ? (List<String>) userDoc.get("borrowedBooks") : new ArrayList<>();
+        user.borrowDates = userDoc.get("borrowDates") != null ? (Map<String, String>) userDoc.get("borrowDates") : new HashMap<>();
+        user.dueDates = userDoc.get("dueDates") != null ? (Map<String, String>) userDoc.get("dueDates") : new HashMap<>();
+        user.totalFine = userDoc.get("totalFine") instanceof Number ? ((Number) userDoc.get("totalFine")).doubleValue() : 0.0;
+        
+        return user;
+    }
+    
     /**
      * Load all users from database
      */
     public Map<String, User> loadAllUsers() {
+        int batchSize = Integer.parseInt(config.getProperty("mongodb.users.batch.size", "500"));
+        return loadAllUsers(null, batchSize);
+    }
+    
+    /**
+     * Load all users with a single cursor, mapping each document directly.
+     * Users loaded with a projection are partial and must not be saved back.
+     * 
+     * @param projection fields to fetch (null for the full document); username is always included
+     * @param batchSize  documents per cursor batch (0 for the driver default)
+     */
+    public Map<String, User> loadAllUsers(Bson projection, int batchSize) {
         Map<String, User> users = new HashMap<>();
         
         if (!isConnected()) return users;
         
         try {
             MongoCollection<Document> collection = database.getCollection(usersCollection);
+            FindIterable<Document> cursor = collection.find();
+            if (projection != null) {
+                cursor = cursor.projection(Projections.fields(Projections.include("username"), projection));
+            }
+            if (batchSize > 0) {
+                cursor = cursor.batchSize(batchSize);
+            }
             
-            for (Document doc : collection.find()) {
+            for (Document doc : cursor) {
                 String username = doc.getString("username");
-                User user = loadUser(username);
-                if (user != null) {
-                    users.put(username, user);
+                if (username != null) {
+                    users.put(username, documentToUser(doc));
                 }
             }
             
@@ -223,7 +530,16 @@ public class MongoDBManager {
         
         try {
             MongoCollection<Document> collection = database.getCollection(usersCollection);
-            collection.deleteOne(Filters.eq("username", username));
+            Document deleted = collection.findOneAndDelete(Filters.eq("username", username),
+                    new FindOneAndDeleteOptions().projection(Projections.include("borrowedBooks", "totalFine")));
+            if (deleted != null) {
+                Map<String, Number> deltas = new HashMap<>();
+                deltas.put(LibraryStats.TOTAL_USERS, -1);
+                deltas.put(LibraryStats.ACTIVE_BORROWS, -loanCount(deleted));
+                deltas.put(LibraryStats.OUTSTANDING_FINES, -fineOf(deleted));
+                updateStats(deltas);
+                userWritten(username, ChangeLog.DELETE);
+            }
             return true;
         } catch (Exception e) {
             System.err.println("❌ Error deleting user: " + e.getMessage());
@@ -234,31 +550,18 @@ public class MongoDBManager {
     // ==================== BOOK OPERATIONS ====================
     
     /**
-     * Save book to database
+     * Save book to database (single-round-trip upsert)
      */
     public boolean saveBook(String bookTitle, int copies, String bookType, String category) {
         if (!isConnected()) return false;
         
         try {
-            MongoCollection<Document> collection = database.getCollection(booksCollection);
-            
-            Document bookDoc = new Document("title", bookTitle)
-                    .append("copies", copies)
-                    .append("bookType", bookType)
-                    .append("category", category)
-                    .append("createdAt", LocalDateTime.now().toString())
-                    .append("lastModified", LocalDateTime.now().toString());
-            
-            // Check if book exists
-            Document existing = collection.find(Filters.eq("title", bookTitle)).first();
-            if (existing != null) {
-                // Update existing book
-                collection.replaceOne(Filters.eq("title", bookTitle), bookDoc);
-            } else {
-                // Insert new book
-                collection.insertOne(bookDoc);
-            }
-            
+            Bson update = Updates.combine(
+                Updates.set("copies", copies),
+                Updates.set("bookType", bookType),
+                Updates.set("category", category)
+            );
+            upsertBook(bookTitle, copies, update);
             return true;
         } catch (Exception e) {
             System.err.println("❌ Error saving book: " + e.getMessage());
@@ -273,32 +576,44 @@ public class MongoDBManager {
         if (!isConnected()) return false;
         
         try {
-            MongoCollection<Document> collection = database.getCollection(booksCollection);
-            
-            Document bookDoc = new Document("title", bookTitle)
-                    .append("copies", copies)
-                    .append("bookType", bookType)
-                    .append("category", category)
-                    .append("owner", owner)
-                    .append("visibility", visibility) // "PUBLIC" or "PRIVATE"
-                    .append("createdAt", LocalDateTime.now().toString())
-                    .append("lastModified", LocalDateTime.now().toString());
-            
-            // Check if book exists
-            Document existing = collection.find(Filters.eq("title", bookTitle)).first();
-            if (existing != null) {
-                // Keep creator if not specified, or update it? Let's just update fields.
-                collection.replaceOne(Filters.eq("title", bookTitle), bookDoc);
-            } else {
-                collection.insertOne(bookDoc);
-            }
-            
+            Bson update = Updates.combine(
+                Updates.set("copies", copies),
+                Updates.set("bookType", bookType),
+                Updates.set("category", category),
+                Updates.set("owner", owner),
+                Updates.set("visibility", visibility) // "PUBLIC" or "PRIVATE"
+            );
+            upsertBook(bookTitle, copies, update);
             return true;
         } catch (Exception e) {
             System.err.println("❌ Error saving book with visibility: " + e.getMessage());
             return false;
         }
     }
+    
+    /**
+     * Upsert a book by title; createdAt is only written on insert
+     */
+    private void upsertBook(String bookTitle, int copies, Bson fields) {
+        MongoCollection<Document> collection = database.getCollection(booksCollection);
+        Bson update = Updates.combine(
+            fields,
+            Updates.set("lastModified", LocalDateTime.now().toString()),
+            Updates.setOnInsert("createdAt", LocalDateTime.now().toString())
+        );
+        Document before = collection.findOneAndUpdate(Filters.eq("title", bookTitle), update,
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.BEFORE)
+                        .projection(Projections.include("copies", "owner", "visibility")));
+        catalogVersion.incrementAndGet();
+        recordBookChange(bookTitle, ChangeLog.UPSERT, before);
+        searchIndex.add(bookTitle);
+        titleTrigrams.add(bookTitle);
+        
+        Map<String, Number> deltas = new HashMap<>();
+        deltas.put(LibraryStats.TOTAL_BOOKS, before == null ? 1 : 0);
+        deltas.put(LibraryStats.TOTAL_COPIES, copies - copiesOf(before));
+        updateStats(deltas);
+    }
 
     /**
      * Load all books with full details (for web app)
@@ -316,6 +631,287 @@ public class MongoDBManager {
         return books;
     }
     
+    /**
+     * Full catalog for the cache: unlike loadBooksWithDetails, a failure is an error, not an empty catalog
+     */
+    private List<Document> fetchCatalog() {
+        if (!isConnected()) {
+            throw new CatalogCache.UnavailableException("Not connected to MongoDB", null);
+        }
+        try {
+            return database.getCollection(booksCollection).find().into(new ArrayList<>());
+        } catch (Exception e) {
+            System.err.println("❌ Error loading book details: " + e.getMessage());
+            throw new CatalogCache.UnavailableException("Catalog query failed", e);
+        }
+    }
+    
+    /**
+     * Load all books with full details through the in-process catalog cache.
+     * The returned list and documents are shared and must not be modified.
+     * Throws CatalogCache.UnavailableException when the catalog can't be loaded.
+     */
+    public List<Document> loadCatalog() {
+        return catalogCache.get();
+    }
+    
+    /**
+     * Current catalog version (incremented on every book write)
+     */
+    public long getCatalogVersion() {
+        return catalogVersion.get();
+    }
+    
+    public CatalogCache getCatalogCache() {
+        return catalogCache;
+    }
+    
+    /**
+     * Ranked full-text search over catalog titles and authors, then any remaining titles
+     * containing the query as a fragment ("gram" -> "Programming").
+     * Returns book documents in that order; the indexes are resynced whenever the catalog cache reloads.
+     */
+    public List<Document> searchCatalog(String query, int limit) {
+        Map<String, Document> byTitle = catalogCache.getByTitle();
+        List<String> titles = searchIndex.search(query, limit);
+        String fragment = query.trim();
+        if (titles.size() < limit && !fragment.isEmpty()) {
+            Set<String> ranked = new HashSet<>(titles);
+            for (String title : titleTrigrams.search(fragment)) {
+                if (titles.size() >= limit) break;
+                if (ranked.add(title)) titles.add(title);
+            }
+        }
+        return toBookDocuments(byTitle, titles);
+    }
+    
+    /**
+     * Typo-tolerant variant of searchCatalog (bounded edit distance per query term)
+     */
+    public List<Document> fuzzySearchCatalog(String query, int maxDistance, int limit) {
+        Map<String, Document> byTitle = catalogCache.getByTitle();
+        return toBookDocuments(byTitle, searchIndex.fuzzySearch(query, maxDistance, limit));
+    }
+    
+    // ==================== CHANGE LOG ====================
+    
+    /**
+     * Books and users written after the given cursor (see ChangeLog)
+     */
+    public ChangeLog.Page getChangesSince(String cursor, int limit) {
+        return changeLog.changesSince(cursor, limit);
+    }
+    
+    public String getChangeCursor() {
+        return changeLog.getCursor();
+    }
+    
+    /**
+     * Log a book write along with who could see it beforehand (null = it didn't exist).
+     * Legacy books without a visibility are PUBLIC.
+     */
+    private void recordBookChange(String bookTitle, String op, Document before) {
+        if (before == null) {
+            changeLog.record(ChangeLog.BOOK, bookTitle, op, false, null);
+            return;
+        }
+        String visibility = before.getString("visibility");
+        boolean isPublic = visibility == null || "PUBLIC".equalsIgnoreCase(visibility);
+        changeLog.record(ChangeLog.BOOK, bookTitle, op, isPublic, before.getString("owner"));
+    }
+    
+    /**
+     * Current documents of the given users in one query, keyed by username (passwords excluded).
+     * Returns null when they can't be read, so a failure isn't mistaken for deleted users.
+     */
+    public Map<String, Document> loadUserDocuments(Collection<String> usernames) {
+        Map<String, Document> users = new HashMap<>();
+        if (usernames.isEmpty()) return users;
+        if (!isConnected()) return null;
+        
+        try {
+            database.getCollection(usersCollection)
+                    .find(Filters.in("username", usernames))
+                    .projection(Projections.exclude("_id", "password"))
+                    .forEach(doc -> users.put(doc.getString("username"), doc));
+        } catch (Exception e) {
+            System.err.println("❌ Error loading changed users: " + e.getMessage());
+            return null;
+        }
+        return users;
+    }
+    
+    private static List<Document> toBookDocuments(Map<String, Document> byTitle, List<String> titles) {
+        List<Document> results = new ArrayList<>();
+        for (String title : titles) {
+            Document book = byTitle.get(title);
+            if (book != null) results.add(book);
+        }
+        return results;
+    }
+    
+    /**
+     * Apply catalog changes made outside this process (e.g. by the CLI) to the search index
+     */
+    private void syncSearchIndex(List<Document> books) {
+        List<String> titles = new ArrayList<>(books.size());
+        for (Document book : books) {
+            String title = book.getString("title");
+            if (title != null) titles.add(title);
+        }
+        searchIndex.syncTo(titles);
+        titleTrigrams.syncTo(titles);
+    }
+    
+    // ==================== PAGINATED CATALOG ====================
+    
+    // Public sort keys mapped to document fields; title is always the tiebreaker
+    private static final Map<String, String> BOOK_SORT_FIELDS = Map.of(
+        "title", "title",
+        "copies", "copies",
+        "category", "category",
+        "type", "bookType"
+    );
+    private static final Gson cursorGson = new Gson();
+    
+    /**
+     * One page of books plus the cursor for the next page (null on the last page)
+     */
+    public static class BookPage {
+        private final List<Document> books;
+        private final String nextCursor;
+        
+        BookPage(List<Document> books, String nextCursor) {
+            this.books = books;
+            this.nextCursor = nextCursor;
+        }
+        
+        public List<Document> getBooks() { return books; }
+        public String getNextCursor() { return nextCursor; }
+        public boolean hasMore() { return nextCursor != null; }
+    }
+    
+    public static boolean isBookSortKey(String sortKey) {
+        return BOOK_SORT_FIELDS.containsKey(sortKey);
+    }
+    
+    /**
+     * Build the catalog filter: visibility for the viewer plus optional field filters (null = any)
+     */
+    public Bson buildBookFilter(String viewer, String category, String bookType, Boolean available, String owner) {
+        List<Bson> filters = new ArrayList<>();
+        
+        // Legacy books without visibility are PUBLIC; owners and admin also see PRIVATE books
+        if (!"admin".equals(viewer)) {
+            List<Bson> visible = new ArrayList<>();
+            visible.add(Filters.eq("visibility", null));
+            visible.add(Filters.eq("visibility", "PUBLIC"));
+            if (viewer != null) visible.add(Filters.eq("owner", viewer));
+            filters.add(Filters.or(visible));
+        }
+        if (category != null) filters.add(Filters.eq("category", category));
+        if (bookType != null) filters.add(Filters.eq("bookType", bookType));
+        if (available != null) filters.add(available ? Filters.gt("copies", 0) : Filters.lte("copies", 0));
+        if (owner != null) filters.add(Filters.eq("owner", owner));
+        
+        return filters.isEmpty() ? new Document() : Filters.and(filters);
+    }
+    
+    /**
+     * Load one page of books using keyset pagination.
+     * The cursor encodes the last row's sort value and title, so every page is an
+     * index range scan no matter how deep the client has paged. It also records the
+     * sort key and direction it belongs to; a position is meaningless in any other order.
+     * 
+     * @throws IllegalArgumentException for an unknown sort key, a malformed cursor, or a
+     *         cursor issued for a different sort key or direction
+     */
+    public BookPage loadBooksPage(Bson filter, String sortKey, boolean descending, String cursor, int limit) {
+        String field = BOOK_SORT_FIELDS.get(sortKey);
+        if (field == null) throw new IllegalArgumentException("Unknown sort key: " + sortKey);
+        Object[] after = cursor != null && !cursor.isEmpty() ? decodeCursor(cursor, sortKey, descending) : null;
+        List<Document> books = new ArrayList<>();
+        if (!isConnected()) return new BookPage(books, null);
+        
+        List<Bson> conditions = new ArrayList<>();
+        conditions.add(filter);
+        if (after != null) {
+            conditions.add(afterCursor(field, descending, after));
+        }
+        Bson sort = descending
+                ? Sorts.orderBy(Sorts.descending(field), Sorts.descending("title"))
+                : Sorts.orderBy(Sorts.ascending(field), Sorts.ascending("title"));
+        
+        try {
+            database.getCollection(booksCollection)
+                    .find(Filters.and(conditions))
+                    .sort(sort)
+                    .limit(limit + 1)
+                    .into(books);
+        } catch (Exception e) {
+            System.err.println("❌ Error loading book page: " + e.getMessage());
+            return new BookPage(new ArrayList<>(), null);
+        }
+        
+        String next = null;
+        if (books.size() > limit) {
+            books = new ArrayList<>(books.subList(0, limit));
+            Document last = books.get(limit - 1);
+            next = encodeCursor(sortKey, descending, last.get(field), last.getString("title"));
+        }
+        return new BookPage(books, next);
+    }
+    
+    /**
+     * Keyset condition for rows after (value, title) in the given order.
+     * Missing/null values sort first ascending and last descending, as in MongoDB.
+     */
+    private static Bson afterCursor(String field, boolean descending, Object[] key) {
+        Object value = key[0];
+        String title = (String) key[1];
+        Bson titleAfter = descending ? Filters.lt("title", title) : Filters.gt("title", title);
+        if (field.equals("title")) return titleAfter;
+        
+        Bson sameValueLaterTitle = Filters.and(Filters.eq(field, value), titleAfter);
+        if (value == null) {
+            return descending ? sameValueLaterTitle : Filters.or(sameValueLaterTitle, Filters.ne(field, null));
+        }
+        Bson valueAfter = descending ? Filters.lt(field, value) : Filters.gt(field, value);
+        return descending
+                ? Filters.or(valueAfter, sameValueLaterTitle, Filters.eq(field, null))
+                : Filters.or(valueAfter, sameValueLaterTitle);
+    }
+    
+    private static String encodeCursor(String sortKey, boolean descending, Object value, String title) {
+        Map<String, Object> key = new HashMap<>();
+        key.put("s", sortKey);
+        key.put("d", descending);
+        key.put("v", value);
+        key.put("t", title);
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(cursorGson.toJson(key).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static Object[] decodeCursor(String cursor, String sortKey, boolean descending) {
+        try {
+            String json = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            Map<?, ?> key = cursorGson.fromJson(json, Map.class);
+            Object title = key.get("t");
+            Object value = key.get("v");
+            if (!(title instanceof String)) throw new IllegalArgumentException("Invalid cursor");
+            if (!sortKey.equals(key.get("s")) || !Boolean.valueOf(descending).equals(key.get("d"))) {
+                throw new IllegalArgumentException("Cursor belongs to a different sort or order");
+            }
+            // Gson reads numbers as doubles; copies is stored as an int
+            if (value instanceof Number && sortKey.equals("copies")) value = ((Number) value).intValue();
+            return new Object[] { value, title };
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+    
     /**
      * Load all books from database
      */
@@ -374,7 +970,18 @@ public class MongoDBManager {
         
         try {
             MongoCollection<Document> collection = database.getCollection(booksCollection);
-            collection.deleteOne(Filters.eq("title", bookTitle));
+            Document deleted = collection.findOneAndDelete(Filters.eq("title", bookTitle),
+                    new FindOneAndDeleteOptions().projection(Projections.include("copies", "owner", "visibility")));
+            catalogVersion.incrementAndGet();
+            searchIndex.remove(bookTitle);
+            titleTrigrams.remove(bookTitle);
+            if (deleted != null) {
+                Map<String, Number> deltas = new HashMap<>();
+                deltas.put(LibraryStats.TOTAL_BOOKS, -1);
+                deltas.put(LibraryStats.TOTAL_COPIES, -copiesOf(deleted));
+                updateStats(deltas);
+                recordBookChange(bookTitle, ChangeLog.DELETE, deleted);
+            }
             return true;
         } catch (Exception e) {
             System.err.println("❌ Error deleting book: " + e.getMessage());
@@ -394,7 +1001,14 @@ public class MongoDBManager {
                 Updates.set("copies", copies),
                 Updates.set("lastModified", LocalDateTime.now().toString())
             );
-            collection.updateOne(Filters.eq("title", bookTitle), update);
+            Document before = collection.findOneAndUpdate(Filters.eq("title", bookTitle), update,
+                    new FindOneAndUpdateOptions().returnDocument(ReturnDocument.BEFORE)
+                            .projection(Projections.include("copies", "owner", "visibility")));
+            catalogVersion.incrementAndGet();
+            if (before != null) {
+                updateStats(Map.of(LibraryStats.TOTAL_COPIES, copies - copiesOf(before)));
+                recordBookChange(bookTitle, ChangeLog.UPSERT, before);
+            }
             return true;
         } catch (Exception e) {
             System.err.println("❌ Error updating book copies: " + e.getMessage());
@@ -402,6 +1016,171 @@ public class MongoDBManager {
         }
     }
     
+    // ==================== INVENTORY OPERATIONS ====================
+    
+    /**
+     * Outcome of an atomic inventory change
+     */
+    public static class InventoryResult {
+        public enum Status { RESERVED, RELEASED, SOLD_OUT, NOT_FOUND, ERROR }
+        
+        private final Status status;
+        private final Document book;
+        
+        InventoryResult(Status status, Document book) {
+            this.status = status;
+            this.book = book;
+        }
+        
+        public Status getStatus() { return status; }
+        
+        public boolean isSuccess() {
+            return status == Status.RESERVED || status == Status.RELEASED;
+        }
+        
+        /** Copies left after the update, or -1 when nothing was changed */
+        public int getCopies() {
+            return book != null ? book.getInteger("copies", 0) : -1;
+        }
+        
+        public String getBookType() {
+            return book != null && book.getString("bookType") != null ? book.getString("bookType") : "Regular";
+        }
+        
+        /** Post-image of the book document (null unless the update succeeded) */
+        public Document getBook() { return book; }
+    }
+    
+    /**
+     * Reserve one copy of a book.
+     * Decrements copies only when copies > 0, in a single conditional update.
+     */
+    public InventoryResult reserveCopy(String bookTitle) {
+        if (!isConnected()) return new InventoryResult(InventoryResult.Status.ERROR, null);
+        
+        try {
+            MongoCollection<Document> collection = database.getCollection(booksCollection);
+            Document updated = collection.findOneAndUpdate(
+                Filters.and(Filters.eq("title", bookTitle), Filters.gt("copies", 0)),
+                Updates.combine(
+                    Updates.inc("copies", -1),
+                    Updates.set("lastModified", LocalDateTime.now().toString())
+                ),
+                new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER)
+            );
+            if (updated != null) {
+                catalogVersion.incrementAndGet();
+                updateStats(Map.of(LibraryStats.TOTAL_COPIES, -1));
+                // Only copies changed, so the post-image has the same audience
+                recordBookChange(bookTitle, ChangeLog.UPSERT, updated);
+                return new InventoryResult(InventoryResult.Status.RESERVED, updated);
+            }
+            
+            // Nothing matched: tell "sold out" apart from "no such title"
+            Document existing = collection.find(Filters.eq("title", bookTitle))
+                    .projection(Projections.include("title"))
+                    .first();
+            return new InventoryResult(existing != null ? InventoryResult.Status.SOLD_OUT : InventoryResult.Status.NOT_FOUND, null);
+        } catch (Exception e) {
+            System.err.println("❌ Error reserving book copy: " + e.getMessage());
+            return new InventoryResult(InventoryResult.Status.ERROR, null);
+        }
+    }
+    
+    /**
+     * Release one copy of a book back to inventory in a single atomic update
+     */
+    public InventoryResult releaseCopy(String bookTitle) {
+        if (!isConnected()) return new InventoryResult(InventoryResult.Status.ERROR, null);
+        
+        try {
+            MongoCollection<Document> collection = database.getCollection(booksCollection);
+            Document updated = collection.findOneAndUpdate(
+                Filters.eq("title", bookTitle),
+                Updates.combine(
+                    Updates.inc("copies", 1),
+                    Updates.set("lastModified", LocalDateTime.now().toString())
+                ),
+                new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER)
+            );
+            if (updated == null) {
+                return new InventoryResult(InventoryResult.Status.NOT_FOUND, null);
+            }
+            catalogVersion.incrementAndGet();
+            updateStats(Map.of(LibraryStats.TOTAL_COPIES, 1));
+            recordBookChange(bookTitle, ChangeLog.UPSERT, updated);
+            return new InventoryResult(InventoryResult.Status.RELEASED, updated);
+        } catch (Exception e) {
+            System.err.println("❌ Error releasing book copy: " + e.getMessage());
+            return new InventoryResult(InventoryResult.Status.ERROR, null);
+        }
+    }
+    
+    // ==================== LIBRARY STATISTICS ====================
+    
+    /**
+     * Set up the running stats document and its periodic reconciliation
+     */
+    private void startStats() {
+        if (database == null) return;
+        stats = new LibraryStats(
+            database.getCollection(statsCollection),
+            database.getCollection(usersCollection),
+            database.getCollection(booksCollection)
+        );
+        stats.startReconciliation(Long.parseLong(config.getProperty("stats.reconcile.interval.ms", "300000")));
+    }
+    
+    /**
+     * Dashboard totals (users, titles, copies, active borrows, overdue loans, outstanding fines)
+     * read from the stats document; empty when offline
+     */
+    public Document getLibraryStats() {
+        if (stats == null || !isConnected()) return new Document();
+        try {
+            return stats.read();
+        } catch (Exception e) {
+            System.err.println("❌ Error reading stats: " + e.getMessage());
+            return new Document();
+        }
+    }
+    
+    /**
+     * Recompute the stats document from the source collections now
+     */
+    public Document reconcileLibraryStats() {
+        if (stats == null || !isConnected()) return new Document();
+        return stats.reconcile();
+    }
+    
+    /**
+     * Apply stats deltas after a successful write. A failure here only leaves the totals
+     * off until the next reconciliation, so it never fails the write itself.
+     */
+    private void updateStats(Map<String, ? extends Number> deltas) {
+        if (stats == null) return;
+        try {
+            stats.increment(deltas);
+        } catch (Exception e) {
+            System.err.println("⚠️  Stats update skipped: " + e.getMessage());
+        }
+    }
+    
+    private static int loanCount(Document user) {
+        Object loans = user != null ? user.get("borrowedBooks") : null;
+        return loans instanceof List ? ((List<?>) loans).size() : 0;
+    }
+    
+    private static double fineOf(Document user) {
+        Object fine = user != null ? user.get("totalFine") : null;
+        return fine instanceof Number ? ((Number) fine).doubleValue() : 0.0;
+    }
+    
+    private static int copiesOf(Document book) {
+        Object copies = book != null ? book.get("copies") : null;
+        return copies instanceof Number ? ((Number) copies).intValue() : 0;
+    }
+    
     // ==================== CATEGORY OPERATIONS ====================
     
     /**
@@ -482,20 +1261,42 @@ public class MongoDBManager {
     // ==================== TRANSACTION OPERATIONS ====================
     
     /**
-     * Save transaction (borrow/return) to database
+     * Start the write-behind transaction log if enabled
+     */
+    private void startTransactionLog() {
+        if (database == null) return;
+        if (!Boolean.parseBoolean(config.getProperty("transactions.writeBehind.enabled", "true"))) return;
+        
+        transactionLog = new TransactionLogWriter(
+            database.getCollection(transactionsCollection),
+            Integer.parseInt(config.getProperty("transactions.writeBehind.capacity", "10000")),
+            Integer.parseInt(config.getProperty("transactions.writeBehind.batch.size", "100")),
+            Long.parseLong(config.getProperty("transactions.writeBehind.flush.ms", "200")),
+            Long.parseLong(config.getProperty("transactions.writeBehind.enqueue.timeout.ms", "50")),
+            Integer.parseInt(config.getProperty("transactions.writeBehind.retry.max", "3")),
+            Long.parseLong(config.getProperty("transactions.writeBehind.retry.backoff.ms", "100"))
+        );
+    }
+    
+    /**
+     * Save transaction (borrow/return) to database.
+     * With write-behind enabled the record is queued and inserted in a later batch.
      */
     public boolean saveTransaction(String username, String bookTitle, String action, String date) {
         if (!isConnected()) return false;
         
         try {
-            MongoCollection<Document> collection = database.getCollection(transactionsCollection);
-            
             Document transaction = new Document("username", username)
                     .append("bookTitle", bookTitle)
                     .append("action", action)
                     .append("date", date)
                     .append("timestamp", LocalDateTime.now().toString());
             
+            if (transactionLog != null) {
+                return transactionLog.enqueue(transaction);
+            }
+            
+            MongoCollection<Document> collection = database.getCollection(transactionsCollection);
             collection.insertOne(transaction);
             return true;
         } catch (Exception e) {
@@ -513,6 +1314,10 @@ public class MongoDBManager {
         if (!isConnected()) return transactions;
         
         try {
+            // Make queued records visible before reading them back
+            if (transactionLog != null) {
+                transactionLog.flush();
+            }
             MongoCollection<Document> collection = database.getCollection(transactionsCollection);
             collection.find(Filters.eq("username", username)).into(transactions);
         } catch (Exception e) {
@@ -557,6 +1362,13 @@ public class MongoDBManager {
             database.getCollection(booksCollection).deleteMany(new Document());
             database.getCollection(transactionsCollection).deleteMany(new Document());
             database.getCollection(categoriesCollection).deleteMany(new Document());
+            catalogVersion.incrementAndGet();
+            searchIndex.clear();
+            titleTrigrams.rebuild(Collections.emptyList());
+            if (stats != null) stats.reset();
+            changeLog.truncateAll();
+            Consumer<String> listener = userWriteListener;
+            if (listener != null) listener.accept(null);
             
             System.out.println("✅ All data cleared from database");
         } catch (Exception e) {
@@ -577,8 +1389,10 @@ public class MongoDBManager {
             System.out.println("\n📊 === DATABASE STATISTICS ===");
             System.out.println("Users: " + database.getCollection(usersCollection).countDocuments());
             System.out.println("Books: " + database.getCollection(booksCollection).countDocuments());
-            System.out.println("Transactions: " + database.getCollection(transactionsCollection).countDocuments());
+            System.out.println("Transactions: " + database.getCollection(transactionsCollection).countDocuments()
+                    + (transactionLog != null ? " (+" + transactionLog.getPendingCount() + " queued)" : ""));
             System.out.println("Categories: " + database.getCollection(categoriesCollection).countDocuments());
+            System.out.println("Catalog cache: " + catalogCache.getHits() + " hits / " + catalogCache.getMisses() + " misses");
         } catch (Exception e) {
             System.err.println("❌ Error getting stats: " + e.getMessage());
         }
@@ -588,6 +1402,13 @@ public class MongoDBManager {
      * Close database connection
      */
     public void close() {
+        if (stats != null) {
+            stats.stop();
+        }
+        if (transactionLog != null) {
+            // Flush pending transaction records before the connection goes away
+            transactionLog.close();
+        }
         if (mongoClient != null) {
             mongoClient.close();
             System.out.println("✅ Database connection closed");
@@ -0,0 +1,120 @@
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate Limiter - token buckets keyed by client (and endpoint).
+ * A bucket is a single AtomicLong: the time at which it will be full again. Taking a
+ * token pushes that time one refill interval further; the request is refused if that
+ * would leave less than zero tokens. Updates are a compare-and-set loop, so requests
+ * never block on each other.
+ * A bucket whose full-again time has passed is indistinguishable from a new one,
+ * so idle keys are simply dropped by a periodic sweep.
+ */
+public class RateLimiter {
+
+    /** Bucket size and refill rate */
+    public static final class Limit {
+        private final int capacity;
+        private final long intervalNanos;
+
+        public Limit(int capacity, double perSecond) {
+            this.capacity = Math.max(1, capacity);
+            this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / Math.max(0.001, perSecond)));
+        }
+
+        public int getCapacity() { return capacity; }
+    }
+
+    /** Outcome of one tryAcquire */
+    public static final class Decision {
+        private final boolean allowed;
+        private final int limit;
+        private final int remaining;
+        private final long waitNanos;
+
+        Decision(boolean allowed, int limit, int remaining, long waitNanos) {
+            this.allowed = allowed;
+            this.limit = limit;
+            this.remaining = remaining;
+            this.waitNanos = waitNanos;
+        }
+
+        public boolean isAllowed() { return allowed; }
+        public int getLimit() { return limit; }
+        public int getRemaining() { return remaining; }
+        /** Refused: until a token is available. Allowed: until the bucket is full again. */
+        public long getWaitSeconds() { return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L)); }
+    }
+
+    // key -> time (System.nanoTime) at which the bucket is full again
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private ScheduledExecutorService sweeper;
+
+    /**
+     * Take one token from the key's bucket if there is one
+     */
+    public Decision tryAcquire(String key, Limit limit) {
+        long now = System.nanoTime();
+        AtomicLong fullAt = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        long burst = limit.capacity * limit.intervalNanos;
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + limit.intervalNanos;
+            long debt = next - now; // time needed to refill what has been taken
+            if (debt > burst) {
+                return new Decision(false, limit.capacity, 0, debt - burst);
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return new Decision(true, limit.capacity, (int) ((burst - debt) / limit.intervalNanos), debt);
+            }
+        }
+    }
+
+    /**
+     * Give back a token taken by tryAcquire whose request was refused elsewhere
+     */
+    public void refund(String key, Limit limit) {
+        AtomicLong fullAt = buckets.get(key);
+        if (fullAt == null) return;
+        // Already full again (or later in the past) means nothing is owed
+        fullAt.getAndUpdate(current -> Math.max(current - limit.intervalNanos, Math.min(current, System.nanoTime())));
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    // ==================== IDLE EVICTION ====================
+
+    /**
+     * Drop buckets that have been full (unused) for at least idleMillis, every idleMillis
+     */
+    public synchronized void startSweeping(long idleMillis) {
+        if (sweeper != null || idleMillis <= 0) return;
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rate-limit-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        sweeper.scheduleWithFixedDelay(() -> {
+            long now = System.nanoTime();
+            for (Iterator<AtomicLong> it = buckets.values().iterator(); it.hasNext(); ) {
+                // A request racing with the removal just starts a fresh (full) bucket
+                if (now - it.next().get() >= idleNanos) it.remove();
+            }
+        }, idleMillis, idleMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Session Store - opaque login tokens held in memory.
+ * Sessions expire after a period of inactivity (sliding TTL) and the store is bounded:
+ * when full, the least recently used session is evicted. Because every use moves a
+ * session to the back of an access-ordered map, expired sessions always sit at the front
+ * and are purged without scanning the rest.
+ *
+ * Each signed-in user also has a cached snapshot of their User, so authenticated
+ * requests skip the database lookup. Writers call userChanged(username) after every
+ * user write; the snapshot is dropped and reloaded on next use.
+ *
+ * Where a token would have to go into a URL (EventSource can't send headers), a session
+ * hands out a ticket instead: single use and valid for TICKET_TTL_MILLIS, so a copy left
+ * in a log or the browser history is worthless.
+ */
+public class SessionStore {
+
+    /** One signed-in client */
+    public static final class Session {
+        private final String token;
+        private final String username;
+        private final long createdAt;
+        private long lastAccess;
+
+        Session(String token, String username, long now) {
+            this.token = token;
+            this.username = username;
+            this.createdAt = now;
+            this.lastAccess = now;
+        }
+
+        public String getToken() { return token; }
+        public String getUsername() { return username; }
+        public long getCreatedAt() { return createdAt; }
+    }
+
+    private static final class Snapshot {
+        final User user;
+        final long loadedAt;
+
+        Snapshot(User user, long loadedAt) {
+            this.user = user;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    public static final long TICKET_TTL_MILLIS = 30_000;
+
+    private static final class Ticket {
+        final String token;
+        final long expiresAt;
+
+        Ticket(String token, long expiresAt) {
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final SecureRandom random = new SecureRandom();
+    private final long ttlMillis;
+    private final int maxSessions;
+    private final long snapshotMaxAgeMillis;
+    private final Function<String, User> loader;
+
+    // token -> session, least recently used first (guarded by this)
+    private final LinkedHashMap<String, Session> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Integer> sessionsPerUser = new HashMap<>();
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    // ticket -> session token, oldest first (guarded by this; all share one TTL, so expired ones lead)
+    private final LinkedHashMap<String, Ticket> tickets = new LinkedHashMap<>();
+    // Bumped on every invalidation; a load that raced with one is not cached
+    private final AtomicLong generation = new AtomicLong();
+    private long evicted;
+
+    /**
+     * @param ttlMillis             idle time after which a session expires
+     * @param maxSessions           sessions kept at most; the least recently used is evicted beyond that
+     * @param snapshotMaxAgeMillis  reload a cached user at least this often (covers writes by other processes)
+     * @param loader                loads a user by name (null if it doesn't exist)
+     */
+    public SessionStore(long ttlMillis, int maxSessions, long snapshotMaxAgeMillis, Function<String, User> loader) {
+        this.ttlMillis = Math.max(1000, ttlMillis);
+        this.maxSessions = Math.max(1, maxSessions);
+        this.snapshotMaxAgeMillis = snapshotMaxAgeMillis;
+        this.loader = loader;
+    }
+
+    /**
+     * Start a session for a user whose credentials were just verified
+     */
+    public Session create(String username) {
+        long now = System.currentTimeMillis();
+        String token = newToken();
+        Session session = new Session(token, username, now);
+
+        synchronized (this) {
+            purgeExpired(now);
+            while (sessions.size() >= maxSessions) {
+                Iterator<Session> eldest = sessions.values().iterator();
+                forget(eldest.next());
+                eldest.remove();
+                evicted++;
+            }
+            sessions.put(token, session);
+            sessionsPerUser.merge(username, 1, Integer::sum);
+        }
+        return session;
+    }
+
+    /**
+     * Look up a session and extend its lifetime; null if unknown or expired
+     */
+    public synchronized Session touch(String token) {
+        long now = System.currentTimeMillis();
+        purgeExpired(now);
+        Session session = sessions.get(token);
+        if (session != null) session.lastAccess = now;
+        return session;
+    }
+
+    /**
+     * A single-use ticket standing in for the session, for URLs
+     */
+    public String issueTicket(Session session) {
+        String ticket = newToken();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            purgeExpiredTickets(now);
+            // Bounded like the sessions themselves
+            while (tickets.size() >= maxSessions) {
+                Iterator<Ticket> eldest = tickets.values().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+            tickets.put(ticket, new Ticket(session.getToken(), now + TICKET_TTL_MILLIS));
+        }
+        return ticket;
+    }
+
+    /**
+     * Use up a ticket: its session (extended, as by touch), or null if unknown, expired or already used
+     */
+    public synchronized Session redeemTicket(String ticket) {
+        Ticket redeemed = tickets.remove(ticket);
+        if (redeemed == null || redeemed.expiresAt <= System.currentTimeMillis()) return null;
+        return touch(redeemed.token);
+    }
+
+    public synchronized void end(String token) {
+        Session session = sessions.remove(token);
+        if (session != null) forget(session);
+    }
+
+    /**
+     * The session's user, from the snapshot when it is current.
+     * Returns a private copy the caller may modify; null if the user no longer exists.
+     */
+    public User userOf(Session session) {
+        String username = session.getUsername();
+        long now = System.currentTimeMillis();
+        Snapshot snapshot = snapshots.get(username);
+        if (snapshot == null || now - snapshot.loadedAt > snapshotMaxAgeMillis) {
+            long seen = generation.get();
+            User loaded = loader.apply(username);
+            if (loaded == null) return null;
+            synchronized (this) {
+                if (generation.get() == seen && sessionsPerUser.containsKey(username)) {
+                    snapshots.put(username, new Snapshot(loaded, now));
+                }
+            }
+            return copyOf(loaded);
+        }
+        return copyOf(snapshot.user);
+    }
+
+    /**
+     * A user was written: drop their snapshot (null = every user, e.g. after clearing the database)
+     */
+    public void userChanged(String username) {
+        generation.incrementAndGet();
+        if (username == null) {
+            snapshots.clear();
+        } else {
+            snapshots.remove(username);
+        }
+    }
+
+    public synchronized int size() {
+        return sessions.size();
+    }
+
+    public synchronized long getEvictedCount() {
+        return evicted;
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private void purgeExpiredTickets(long now) {
+        Iterator<Ticket> it = tickets.values().iterator();
+        while (it.hasNext() && it.next().expiresAt <= now) {
+            it.remove();
+        }
+    }
+
+    // Expired sessions are the least recently used, so they are all at the front
+    private void purgeExpired(long now) {
+        Iterator<Session> it = sessions.values().iterator();
+        while (it.hasNext()) {
+            Session session = it.next();
+            if (now - session.lastAccess < ttlMillis) break;
+            forget(session);
+            it.remove();
+        }
+    }
+
+    private void forget(Session session) {
+        String username = session.getUsername();
+        if (sessionsPerUser.merge(username, -1, Integer::sum) <= 0) {
+            sessionsPerUser.remove(username);
+            snapshots.remove(username);
+        }
+    }
+
+    private static User copyOf(User user) {
+        User copy = new User(user.username, user.password, user.userType.getType());
+        copy.favourites = new ArrayList<>(user.favourites);
+        copy.borrowedBooks = new ArrayList<>(user.borrowedBooks);
+        copy.borrowDates = new HashMap<>(user.borrowDates);
+        copy.dueDates = new HashMap<>(user.dueDates);
+        copy.totalFine = user.totalFine;
+        return copy;
+    }
+}
@@ -0,0 +1,236 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Static Asset Cache - the public/ folder held in memory.
+ * Each file is read once, given a strong content-hash ETag and, when it pays off,
+ * a precompressed gzip variant. An optional watcher reloads files edited on disk.
+ */
+public class StaticAssetCache {
+
+    /** One cached file; the gzip variant is null when compression doesn't help */
+    public static final class Asset {
+        private final String contentType;
+        private final byte[] bytes;
+        private final String etag;
+        private final byte[] gzipBytes;
+        private final String gzipEtag;
+        private final long lastModified;
+
+        Asset(String contentType, byte[] bytes, String etag, byte[] gzipBytes, long lastModified) {
+            this.contentType = contentType;
+            this.bytes = bytes;
+            this.etag = etag;
+            this.gzipBytes = gzipBytes;
+            // Each representation needs its own strong validator
+            this.gzipEtag = gzipBytes == null ? null : etag.substring(0, etag.length() - 1) + "-gz\"";
+            this.lastModified = lastModified;
+        }
+
+        public String getContentType() { return contentType; }
+        public byte[] getBytes() { return bytes; }
+        public String getEtag() { return etag; }
+        public byte[] getGzipBytes() { return gzipBytes; }
+        public String getGzipEtag() { return gzipEtag; }
+        public long getLastModified() { return lastModified; }
+    }
+
+    private static final Map<String, String> CONTENT_TYPES = Map.ofEntries(
+        Map.entry("html", "text/html; charset=utf-8"),
+        Map.entry("css", "text/css; charset=utf-8"),
+        Map.entry("js", "application/javascript; charset=utf-8"),
+        Map.entry("json", "application/json; charset=utf-8"),
+        Map.entry("txt", "text/plain; charset=utf-8"),
+        Map.entry("svg", "image/svg+xml"),
+        Map.entry("png", "image/png"),
+        Map.entry("jpg", "image/jpeg"),
+        Map.entry("jpeg", "image/jpeg"),
+        Map.entry("gif", "image/gif"),
+        Map.entry("ico", "image/x-icon"),
+        Map.entry("webp", "image/webp"),
+        Map.entry("pdf", "application/pdf"),
+        Map.entry("epub", "application/epub+zip"),
+        Map.entry("csv", "text/csv; charset=utf-8"),
+        Map.entry("zip", "application/zip")
+    );
+
+    private final Path root;
+    private final long maxFileBytes;
+    private final int gzipMinBytes;
+    // request path ("/css/style.css") -> asset
+    private final Map<String, Asset> assets = new ConcurrentHashMap<>();
+    private volatile WatchService watcher;
+
+    /**
+     * @param root          folder to serve
+     * @param maxFileBytes  larger files are not held in memory
+     * @param gzipMinBytes  smaller files are not worth compressing
+     */
+    public StaticAssetCache(Path root, long maxFileBytes, int gzipMinBytes) {
+        this.root = root.toAbsolutePath().normalize();
+        this.maxFileBytes = maxFileBytes;
+        this.gzipMinBytes = gzipMinBytes;
+    }
+
+    /**
+     * Read every file under the root into memory
+     */
+    public void loadAll() {
+        if (!Files.isDirectory(root)) {
+            System.err.println("⚠️  Static folder not found: " + root);
+            return;
+        }
+        try (Stream<Path> files = Files.walk(root)) {
+            files.filter(Files::isRegularFile).forEach(this::reload);
+        } catch (IOException e) {
+            System.err.println("❌ Error loading static assets: " + e.getMessage());
+        }
+        System.out.println("📦 Cached " + assets.size() + " static assets");
+    }
+
+    /**
+     * Cached asset for a request path, loading it on first use if it appeared since startup.
+     * Returns null if the file doesn't exist or is too large to cache.
+     */
+    public Asset get(String requestPath) {
+        Asset asset = assets.get(requestPath);
+        if (asset != null) return asset;
+        Path file = resolve(requestPath);
+        if (file == null || !Files.isRegularFile(file)) return null;
+        reload(file);
+        return assets.get(requestPath);
+    }
+
+    /**
+     * Map a request path to a file under the root, or null if it escapes the root
+     */
+    public Path resolve(String requestPath) {
+        Path file = root.resolve(requestPath.replaceFirst("^/+", "")).normalize();
+        return file.startsWith(root) ? file : null;
+    }
+
+    public static String contentTypeOf(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        String extension = dot < 0 ? "" : fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return CONTENT_TYPES.getOrDefault(extension, "application/octet-stream");
+    }
+
+    private void reload(Path file) {
+        String key = "/" + root.relativize(file).toString().replace('\\', '/');
+        try {
+            if (!Files.isRegularFile(file) || Files.size(file) > maxFileBytes) {
+                assets.remove(key);
+                return;
+            }
+            byte[] bytes = Files.readAllBytes(file);
+            byte[] gzip = bytes.length >= gzipMinBytes ? gzip(bytes) : null;
+            if (gzip != null && gzip.length >= bytes.length) gzip = null;
+            assets.put(key, new Asset(contentTypeOf(key), bytes, etagOf(bytes), gzip,
+                    Files.getLastModifiedTime(file).toMillis()));
+        } catch (IOException e) {
+            assets.remove(key);
+            System.err.println("❌ Error caching " + key + ": " + e.getMessage());
+        }
+    }
+
+    private static String etagOf(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    // ==================== CHANGE WATCHING ====================
+
+    /**
+     * Reload files as they change on disk (useful while editing the frontend)
+     */
+    public void startWatching() {
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            try (Stream<Path> dirs = Files.walk(root)) {
+                for (Path dir : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) {
+                    register(dir);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️  Static asset watching disabled: " + e.getMessage());
+            return;
+        }
+        Thread thread = new Thread(this::watchLoop, "static-asset-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void register(Path dir) throws IOException {
+        dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // Lost track of individual events; start over
+                    assets.clear();
+                    loadAll();
+                    continue;
+                }
+                Path changed = dir.resolve((Path) event.context());
+                if (Files.isDirectory(changed)) {
+                    try {
+                        register(changed);
+                    } catch (IOException e) {
+                        System.err.println("⚠️  Cannot watch " + changed + ": " + e.getMessage());
+                    }
+                    continue;
+                }
+                reload(changed);
+            }
+            key.reset();
+        }
+    }
+
+    public void stopWatching() {
+        WatchService current = watcher;
+        if (current == null) return;
+        try {
+            current.close();
+        } catch (IOException e) {
+            // Nothing left to clean up
+        }
+    }
+}
@@ -0,0 +1,178 @@
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transaction Log Writer - write-behind batching for the transactions collection.
+ * Borrow/return records are queued in memory and flushed with insertMany,
+ * either when a batch fills up or when the flush interval elapses.
+ */
+public class TransactionLogWriter {
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoCollection<Document> collection;
+    private final BlockingQueue<Document> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final long enqueueTimeoutMillis;
+    private final int maxRetries;
+    private final long retryBackoffMillis;
+
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public TransactionLogWriter(MongoCollection<Document> collection, int capacity, int batchSize,
+                                long flushIntervalMillis, long enqueueTimeoutMillis,
+                                int maxRetries, long retryBackoffMillis) {
+        this.collection = collection;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMillis = Math.max(1, flushIntervalMillis);
+        this.enqueueTimeoutMillis = Math.max(0, enqueueTimeoutMillis);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryBackoffMillis = Math.max(0, retryBackoffMillis);
+
+        this.flusher = new Thread(this::runFlusher, "transaction-log-writer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Queue a transaction document.
+     * When the queue stays full past the enqueue timeout, the caller writes it
+     * synchronously instead (backpressure without dropping audit records).
+     */
+    public boolean enqueue(Document transaction) {
+        try {
+            if (running && queue.offer(transaction, enqueueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return writeWithRetry(List.of(transaction));
+    }
+
+    /**
+     * Write everything queued so far on the calling thread (best effort read-your-writes)
+     */
+    public void flush() {
+        List<Document> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            writeWithRetry(batch);
+            batch = new ArrayList<>(batchSize);
+        }
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * Stop accepting work and flush whatever is still queued
+     */
+    public void close() {
+        if (!running) return;
+        running = false;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    // ==================== FLUSHER ====================
+
+    private void runFlusher() {
+        while (running || !queue.isEmpty()) {
+            try {
+                Document first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+
+                List<Document> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+
+                // Linger until the batch fills or the flush interval since the first record passes
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < batchSize && running) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) break;
+                    Document next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                queue.drainTo(batch, batchSize - batch.size());
+
+                writeWithRetry(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                System.err.println("❌ Transaction log writer error: " + e.getMessage());
+            }
+        }
+    }
+
+    private boolean writeWithRetry(List<Document> batch) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                collection.insertMany(batch, new InsertManyOptions().ordered(false));
+                return true;
+            } catch (MongoBulkWriteException e) {
+                // Unordered: everything else is in. Rejected documents (e.g. failed validation) fail the same way again.
+                int rejected = rejectedCount(e);
+                if (rejected > 0) {
+                    System.err.println("❌ Transaction log rejected " + rejected + " of " + batch.size() + " record(s): " + e.getMessage());
+                    return false;
+                }
+                // A retried batch may hit documents that already made it in
+                if (e.getWriteConcernError() == null) return true;
+                if (!isTransient(e) || attempt >= maxRetries) return dropped(batch, e);
+            } catch (Exception e) {
+                if (!isTransient(e) || attempt >= maxRetries) return dropped(batch, e);
+            }
+            try {
+                Thread.sleep(retryBackoffMillis * (attempt + 1));
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return dropped(batch, ie);
+            }
+        }
+    }
+
+    // Documents refused for a reason other than already being there
+    private static int rejectedCount(MongoBulkWriteException e) {
+        List<BulkWriteError> errors = e.getWriteErrors();
+        if (errors == null) return 0;
+        int rejected = 0;
+        for (BulkWriteError error : errors) {
+            if (error.getCode() != DUPLICATE_KEY) rejected++;
+        }
+        return rejected;
+    }
+
+    private static boolean isTransient(Exception e) {
+        if (e instanceof MongoSocketException || e instanceof MongoTimeoutException) return true;
+        return e instanceof MongoException
+                && (((MongoException) e).hasErrorLabel("RetryableWriteError")
+                    || ((MongoException) e).hasErrorLabel("TransientTransactionError"));
+    }
+
+    private static boolean dropped(List<Document> batch, Exception e) {
+        System.err.println("❌ Error saving " + batch.size() + " transaction(s): " + e.getMessage());
+        return false;
+    }
+}
@@ -0,0 +1,205 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Trigram Index - substring ("contains anywhere") search over book titles.
+ * Every title is split into overlapping 3-character grams; a query only verifies
+ * titles that contain all of the query's grams instead of scanning the catalog.
+ */
+public class TrigramIndex {
+
+    // id -> title / lowercased title (null once removed)
+    private final List<String> titles = new ArrayList<>();
+    private final List<String> lowered = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+    // trigram -> ascending title ids
+    private final Map<String, IntList> postings = new HashMap<>();
+    // ascending ids of titles shorter than a trigram (they have no postings)
+    private final IntList shortTitles = new IntList();
+    // removed slots still held in titles/lowered
+    private int tombstones;
+
+    // ==================== MAINTENANCE ====================
+
+    public synchronized void add(String title) {
+        if (title == null || ids.containsKey(title)) return;
+        int id = titles.size();
+        String lower = title.toLowerCase(Locale.ROOT);
+        titles.add(title);
+        lowered.add(lower);
+        ids.put(title, id);
+        // Ids only grow, so appending keeps every posting list sorted
+        for (String gram : trigrams(lower)) {
+            postings.computeIfAbsent(gram, g -> new IntList()).add(id);
+        }
+        if (lower.length() < 3) shortTitles.add(id);
+    }
+
+    public synchronized void remove(String title) {
+        Integer id = ids.remove(title);
+        if (id == null) return;
+        for (String gram : trigrams(lowered.get(id))) {
+            IntList list = postings.get(gram);
+            if (list != null) {
+                list.remove(id);
+                if (list.size == 0) postings.remove(gram);
+            }
+        }
+        shortTitles.remove(id);
+        titles.set(id, null);
+        lowered.set(id, null);
+        // Reclaim the dead slots once they outnumber the live titles
+        if (++tombstones > ids.size()) {
+            List<String> live = new ArrayList<>(ids.size());
+            for (String remaining : titles) {
+                if (remaining != null) live.add(remaining);
+            }
+            rebuild(live);
+        }
+    }
+
+    /**
+     * Rebuild from scratch (ids are reassigned densely)
+     */
+    public synchronized void rebuild(Collection<String> catalog) {
+        titles.clear();
+        lowered.clear();
+        ids.clear();
+        postings.clear();
+        shortTitles.size = 0;
+        tombstones = 0;
+        for (String title : catalog) {
+            add(title);
+        }
+    }
+
+    /**
+     * Bring the index in line with the given catalog, touching only what changed
+     */
+    public synchronized void syncTo(Collection<String> catalog) {
+        Set<String> wanted = new HashSet<>(catalog);
+        for (String title : new ArrayList<>(ids.keySet())) {
+            if (!wanted.contains(title)) remove(title);
+        }
+        for (String title : wanted) {
+            add(title);
+        }
+    }
+
+    public synchronized int size() {
+        return ids.size();
+    }
+
+    // ==================== QUERY ====================
+
+    /**
+     * All titles containing the fragment, case-insensitively, in insertion order
+     */
+    public synchronized List<String> search(String fragment) {
+        List<String> results = new ArrayList<>();
+        if (fragment == null) return results;
+        String needle = fragment.toLowerCase(Locale.ROOT);
+
+        int[] candidates;
+        if (needle.length() >= 3) {
+            candidates = intersect(needle);
+        } else {
+            candidates = shortFragmentCandidates(needle);
+        }
+
+        for (int id : candidates) {
+            String lower = lowered.get(id);
+            // Trigrams only narrow the set; the real contains() check keeps the old semantics exactly
+            if (lower != null && lower.contains(needle)) {
+                results.add(titles.get(id));
+            }
+        }
+        return results;
+    }
+
+    private int[] intersect(String needle) {
+        List<IntList> lists = new ArrayList<>();
+        for (String gram : trigrams(needle)) {
+            IntList list = postings.get(gram);
+            if (list == null) return new int[0];
+            lists.add(list);
+        }
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+
+        IntList smallest = lists.get(0);
+        int[] out = new int[smallest.size];
+        int count = 0;
+        outer:
+        for (int i = 0; i < smallest.size; i++) {
+            int id = smallest.values[i];
+            for (int j = 1; j < lists.size(); j++) {
+                if (!lists.get(j).contains(id)) continue outer;
+            }
+            out[count++] = id;
+        }
+        return Arrays.copyOf(out, count);
+    }
+
+    /**
+     * Fragments shorter than a trigram: union the postings of every trigram that contains them,
+     * plus the titles too short to have trigrams. Only the trigram vocabulary is scanned, which is
+     * far smaller than the catalog. An empty fragment matches everything, as String.contains("") does.
+     */
+    private int[] shortFragmentCandidates(String needle) {
+        if (needle.isEmpty()) {
+            int[] all = new int[titles.size()];
+            for (int i = 0; i < all.length; i++) all[i] = i;
+            return all;
+        }
+        // A bit per id: no boxing, and reading the set bits back yields ids already sorted
+        BitSet union = new BitSet(titles.size());
+        for (Map.Entry<String, IntList> entry : postings.entrySet()) {
+            if (entry.getKey().contains(needle)) {
+                IntList list = entry.getValue();
+                for (int i = 0; i < list.size; i++) union.set(list.values[i]);
+            }
+        }
+        for (int i = 0; i < shortTitles.size; i++) union.set(shortTitles.values[i]);
+        return union.stream().toArray();
+    }
+
+    private static Set<String> trigrams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            grams.add(text.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    /**
+     * Growable sorted int array used for posting lists
+     */
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        boolean contains(int value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        void remove(int value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index < 0) return;
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+        }
+    }
+}
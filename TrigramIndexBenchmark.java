@@ -0,0 +1,72 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Trigram Index Benchmark - linear contains() scan vs TrigramIndex.search over synthetic titles.
+ * Usage: java TrigramIndexBenchmark [catalogSize ...]   (default: 100000 1000000)
+ * Run with enough heap for the largest size, e.g. -Xmx2g for 1M titles.
+ */
+public class TrigramIndexBenchmark {
+    private static final String[] WORDS = {
+        "ocean", "river", "cure", "cloud", "gram", "night", "stone", "garden", "light", "shadow",
+        "winter", "empire", "secret", "silver", "forest", "dream", "storm", "history", "code", "art"
+    };
+    private static final String[] AUTHORS = { "Smith", "Garcia", "Okafor", "Tanaka", "Novak", "Ahmed" };
+    private static final String[] QUERIES = { "gram", "ocean riv", "cure clo", "zzq", "ar" };
+    private static final int RUNS = 20;
+
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0 ? new int[] { 100_000, 1_000_000 } : new int[args.length];
+        for (int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+
+        for (int size : sizes) {
+            List<String> catalog = catalog(size, new Random(42));
+            TrigramIndex index = new TrigramIndex();
+            long start = System.nanoTime();
+            index.rebuild(catalog);
+            System.out.printf("%,d titles (index built in %.0fms)%n", size, (System.nanoTime() - start) / 1e6);
+            System.out.printf("  %-12s %10s %10s %8s%n", "query", "linear", "trigram", "matches");
+
+            for (String query : QUERIES) {
+                int linearMatches = linear(catalog, query).size();
+                int indexMatches = index.search(query).size();
+                if (linearMatches != indexMatches) {
+                    throw new IllegalStateException("Result mismatch for \"" + query + "\": "
+                            + linearMatches + " vs " + indexMatches);
+                }
+                double linearMs = time(() -> linear(catalog, query));
+                double indexMs = time(() -> index.search(query));
+                System.out.printf("  %-12s %8.2fms %8.2fms %8d%n", "\"" + query + "\"", linearMs, indexMs, indexMatches);
+            }
+        }
+    }
+
+    private static List<String> catalog(int size, Random random) {
+        List<String> titles = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            titles.add(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " "
+                    + WORDS[random.nextInt(WORDS.length)] + " Vol " + i + " by " + AUTHORS[random.nextInt(AUTHORS.length)]);
+        }
+        return titles;
+    }
+
+    // What searchBooks did before the index: lowercase and scan every title
+    private static List<String> linear(List<String> catalog, String query) {
+        String needle = query.toLowerCase(Locale.ROOT);
+        List<String> results = new ArrayList<>();
+        for (String title : catalog) {
+            if (title.toLowerCase(Locale.ROOT).contains(needle)) results.add(title);
+        }
+        return results;
+    }
+
+    // Mean over RUNS after a few warm-up calls
+    private static double time(Runnable query) {
+        for (int i = 0; i < 5; i++) query.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) query.run();
+        return (System.nanoTime() - start) / 1e6 / RUNS;
+    }
+}
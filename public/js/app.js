@@ -1,6 +1,9 @@
 // --- Global State ---
 const API_BASE = '/api';
 let currentUser = null;
+let userFavorites = [];
+let searchTimer = null;
+let inventoryEvents = null;
 
 // --- Auth Functions ---
 document.getElementById('loginForm')?.addEventListener('submit', async (e) => {
@@ -18,7 +21,8 @@ document.getElementById('loginForm')?.addEventListener('submit', async (e) => {
         if (data.success) {
             localStorage.setItem('user', JSON.stringify({
                 username: data.username,
-                type: data.userType
+                type: data.userType,
+                token: data.token
             }));
             window.location.href = 'dashboard.html';
         } else {
@@ -47,49 +51,65 @@ function checkAuth() {
 }
 
 function logout() {
+    if (currentUser?.token) {
+        // End the session on the server too; leave regardless of the outcome
+        apiFetch(`${API_BASE}/logout`, { method: 'POST', keepalive: true }).catch(() => {});
+    }
     localStorage.removeItem('user');
     window.location.href = 'index.html';
 }
 
+// fetch() with the session token attached; an expired session sends the user back to login
+async function apiFetch(url, options = {}) {
+    const headers = { ...(options.headers || {}) };
+    if (currentUser?.token) headers['Authorization'] = `Bearer ${currentUser.token}`;
+    const res = await fetch(url, { ...options, headers });
+    if (res.status === 401 && currentUser?.token) {
+        localStorage.removeItem('user');
+        window.location.href = 'index.html';
+    } else if (res.status === 429) {
+        showAlert(`Too many requests. Try again in ${res.headers.get('Retry-After') || 1}s.`, 'error');
+    }
+    return res;
+}
+
 // --- Dashboard Logic ---
 async function loadDashboard() {
-    loadStats();
-    loadBooks();
-    loadMyBooks();
-    loadMyFavorites();
-    if (currentUser && currentUser.username === 'admin') {
-        loadAllUsersForAdmin();
+    // One round trip: books (with favourite flags), my loans and favourites, stats, admin users
+    const res = await apiFetch(`${API_BASE}/dashboard?username=${encodeURIComponent(currentUser.username)}`);
+    if (!res.ok) {
+        showAlert('Could not load dashboard.', 'error');
+        return;
+    }
+    const data = await res.json();
+
+    userFavorites = data.user.favourites || [];
+    renderStats(data.stats);
+    renderBooks(data.books);
+    renderMyBooks(data.user);
+    renderMyFavorites(data.user);
+    if (data.users) {
+        renderAdminUsers(data.users);
     }
 }
 
-async function loadStats() {
-    const res = await fetch(`${API_BASE}/stats`);
-    const stats = await res.json();
+function renderStats(stats) {
     document.getElementById('statsBooks').textContent = stats.totalBooks;
     document.getElementById('statsActive').textContent = stats.activeBorrows;
     document.getElementById('statsUsers').textContent = stats.totalUsers;
 }
 
-async function loadBooks() {
-    // Pass username to get private books visibility
-    const res = await fetch(`${API_BASE}/books?username=${currentUser.username}`);
-    const books = await res.json();
+function renderBooks(books) {
     const tbody = document.querySelector('#booksTable tbody');
     tbody.innerHTML = '';
-
-    // Fetch user favorites to check status
-    const userRes = await fetch(`${API_BASE}/users?username=${currentUser.username}`);
-    const userData = await userRes.json();
-    const favs = userData.favourites || [];
+    const favs = userFavorites;
 
     books.forEach(book => {
         const tr = document.createElement('tr');
+        tr.dataset.title = book.title;
         const isAvailable = book.copies > 0;
-        const statusBadge = isAvailable
-            ? `<span class="badge badge-available">Available (${book.copies})</span>`
-            : `<span class="badge badge-out">Out of Stock</span>`;
 
-        const isFav = favs.contains ? favs.contains(book.title) : favs.includes(book.title);
+        const isFav = book.favorite !== undefined ? book.favorite : favs.includes(book.title);
         const favIcon = isFav ? '❤️' : '🤍';
 
         const visibilityBadge = book.visibility === 'PRIVATE' ? '🔒' : '🌐';
@@ -102,7 +122,7 @@ async function loadBooks() {
             </td>
             <td>${book.type}</td>
             <td>${book.owner || 'System'}</td>
-            <td>${statusBadge}</td>
+            <td class="book-status">${statusBadge(book.copies)}</td>
             <td>
                 <button 
                     onclick="borrowBook('${book.title}')" 
@@ -117,19 +137,73 @@ async function loadBooks() {
     });
 }
 
-function filterBooks() {
-    const input = document.getElementById('searchBooks').value.toLowerCase();
-    const rows = document.querySelectorAll('#booksTable tbody tr');
-    rows.forEach(row => {
-        const title = row.querySelector('td').textContent.toLowerCase();
-        row.style.display = title.includes(input) ? '' : 'none';
+function statusBadge(copies) {
+    return copies > 0
+        ? `<span class="badge badge-available">Available (${copies})</span>`
+        : `<span class="badge badge-out">Out of Stock</span>`;
+}
+
+// --- Live Inventory ---
+async function subscribeInventory() {
+    if (!window.EventSource || inventoryEvents) return;
+    // EventSource can't set headers, so the session is passed as a single-use ticket
+    // (never the token itself, which would end up in logs and history)
+    let query = '';
+    if (currentUser?.token) {
+        try {
+            const res = await apiFetch(`${API_BASE}/events/ticket`, { method: 'POST' });
+            if (!res.ok) throw new Error(`ticket: ${res.status}`);
+            query = `?ticket=${encodeURIComponent((await res.json()).ticket)}`;
+        } catch (err) {
+            setTimeout(subscribeInventory, 3000);
+            return;
+        }
+    }
+    inventoryEvents = new EventSource(`${API_BASE}/events${query}`);
+
+    // A reconnect reuses the spent ticket and is refused; start over with a new one
+    inventoryEvents.addEventListener('error', () => {
+        if (inventoryEvents?.readyState !== EventSource.CLOSED) return;
+        inventoryEvents = null;
+        setTimeout(subscribeInventory, 3000);
     });
+
+    // A copy count changed somewhere: patch that row in place
+    inventoryEvents.addEventListener('inventory', (e) => {
+        const change = JSON.parse(e.data);
+        const row = [...document.querySelectorAll('#booksTable tbody tr')]
+            .find(tr => tr.dataset.title === change.title);
+        if (!row) return;
+        row.querySelector('.book-status').innerHTML = statusBadge(change.copies);
+        const button = row.querySelector('button');
+        button.disabled = change.copies <= 0;
+        button.classList.toggle('btn-secondary', change.copies <= 0);
+    });
+
+    // Server dropped messages for us; start from a fresh view
+    inventoryEvents.addEventListener('resync', () => loadDashboard());
 }
 
-async function loadMyBooks() {
-    const res = await fetch(`${API_BASE}/users?username=${currentUser.username}`);
-    const userData = await res.json();
+function filterBooks() {
+    // Debounce keystrokes, then search on the server
+    clearTimeout(searchTimer);
+    searchTimer = setTimeout(async () => {
+        const input = document.getElementById('searchBooks').value.trim();
+        if (!input) {
+            loadDashboard();
+            return;
+        }
+        const query = `q=${encodeURIComponent(input)}&username=${currentUser.username}`;
+        let books = await (await apiFetch(`${API_BASE}/search?${query}`)).json();
+        if (books.length === 0) {
+            // Nothing matched exactly; retry tolerating typos
+            books = await (await apiFetch(`${API_BASE}/search/fuzzy?${query}`)).json();
+        }
+        renderBooks(books);
+    }, 200);
+}
 
+function renderMyBooks(userData) {
     const container = document.getElementById('myBooksList');
     if (userData.borrowedBooks && userData.borrowedBooks.length > 0) {
         container.innerHTML = `<ul style="padding-left: 20px;">
@@ -165,10 +239,7 @@ async function loadMyBooks() {
     }
 }
 
-async function loadMyFavorites() {
-    const res = await fetch(`${API_BASE}/users?username=${currentUser.username}`);
-    const userData = await res.json();
-
+function renderMyFavorites(userData) {
     const container = document.getElementById('myFavoritesList');
     if (userData.favourites && userData.favourites.length > 0) {
         container.innerHTML = `<ul style="padding-left: 20px;">
@@ -183,16 +254,13 @@ async function loadMyFavorites() {
     }
 }
 
-async function loadAllUsersForAdmin() {
+function renderAdminUsers(users) {
     try {
-        const res = await fetch(`${API_BASE}/users`);
-        const usersMap = await res.json();
-
         const tbody = document.querySelector('#usersTable tbody');
         if (!tbody) return;
         tbody.innerHTML = '';
 
-        Object.values(usersMap).forEach(user => {
+        users.forEach(user => {
             const tr = document.createElement('tr');
             let borrowedDisplay = user.borrowedBooks && user.borrowedBooks.length > 0 ? user.borrowedBooks.join(', ') : '<em>None</em>';
             const fine = user.totalFine ? `$${user.totalFine.toFixed(2)}` : '$0.00';
@@ -214,16 +282,14 @@ async function loadAllUsersForAdmin() {
 // --- Actions ---
 async function borrowBook(bookTitle) {
     if (!currentUser) return;
-    const res = await fetch(`${API_BASE}/borrow`, {
+    const res = await apiFetch(`${API_BASE}/borrow`, {
         method: 'POST',
         body: JSON.stringify({ username: currentUser.username, bookTitle: bookTitle })
     });
     const data = await res.json();
     if (data.success) {
         showAlert(data.message, 'success');
-        loadBooks();
-        loadMyBooks();
-        loadStats();
+        loadDashboard();
     } else {
         showAlert(data.message, 'error');
     }
@@ -231,16 +297,14 @@ async function borrowBook(bookTitle) {
 
 async function returnBook(bookTitle) {
     if (!currentUser) return;
-    const res = await fetch(`${API_BASE}/return`, {
+    const res = await apiFetch(`${API_BASE}/return`, {
         method: 'POST',
         body: JSON.stringify({ username: currentUser.username, bookTitle: bookTitle })
     });
     const data = await res.json();
     if (data.success) {
         showAlert(data.message, 'success'); // Server sends back "Book returned. Fine: $..." message in 'message' field
-        loadBooks();
-        loadMyBooks();
-        loadStats();
+        loadDashboard();
     } else {
         showAlert(data.message || 'Failed to return', 'error');
     }
@@ -248,14 +312,13 @@ async function returnBook(bookTitle) {
 
 async function toggleFavorite(bookTitle) {
     if (!currentUser) return;
-    const res = await fetch(`${API_BASE}/favorites`, {
+    const res = await apiFetch(`${API_BASE}/favorites`, {
         method: 'POST',
         body: JSON.stringify({ username: currentUser.username, bookTitle: bookTitle })
     });
     const data = await res.json();
     if (data.success) {
-        loadBooks(); // refresh icons
-        loadMyFavorites(); // refresh list
+        loadDashboard(); // refresh icons and list
     }
 }
 
@@ -274,7 +337,7 @@ document.getElementById('addBookForm')?.addEventListener('submit', async (e) =>
         visibility: document.getElementById('newBookVisibility').value // Set visibility
     };
 
-    const res = await fetch(`${API_BASE}/books`, {
+    const res = await apiFetch(`${API_BASE}/books`, {
         method: 'POST',
         body: JSON.stringify(bookData)
     });
@@ -282,8 +345,7 @@ document.getElementById('addBookForm')?.addEventListener('submit', async (e) =>
 
     if (data.success) {
         showAlert('Book added successfully!', 'success');
-        loadBooks();
-        loadStats();
+        loadDashboard();
         e.target.reset();
     } else {
         showAlert('Failed to add book.', 'error');
@@ -301,7 +363,7 @@ document.getElementById('addUserForm')?.addEventListener('submit', async (e) =>
         userType: document.getElementById('newUserType').value
     };
 
-    const res = await fetch(`${API_BASE}/register`, {
+    const res = await apiFetch(`${API_BASE}/register`, {
         method: 'POST',
         body: JSON.stringify(userData)
     });
@@ -309,8 +371,7 @@ document.getElementById('addUserForm')?.addEventListener('submit', async (e) =>
 
     if (data.success) {
         showAlert(data.message, 'success');
-        if (typeof loadAllUsersForAdmin === 'function') loadAllUsersForAdmin();
-        loadStats();
+        loadDashboard();
         e.target.reset();
     } else {
         showAlert(data.message, 'error');